@@ -0,0 +1,47 @@
+package practice.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import practice.library.projections.BookView;
+import practice.library.services.BookService;
+import practice.library.util.SearchPage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+
+	private static final String[] QUERIES = {"тайна", "море война", "звезда 42", "остров", "Петров"};
+
+	private BookService bookService;
+
+	private int pages;
+
+	@Setup(Level.Trial)
+	public void setUp(LibraryState library) {
+		bookService = library.bean(BookService.class);
+		pages = Math.max(1, library.books / 20);
+	}
+
+	@Benchmark
+	public List<BookView> indexUnpaged() {
+		return bookService.index(false);
+	}
+
+	// Случайная страница по OFFSET: чем дальше страница, тем дороже
+	@Benchmark
+	public List<BookView> indexPagedSorted() {
+		return bookService.index(ThreadLocalRandom.current().nextInt(pages), 20, true);
+	}
+
+	@Benchmark
+	public SearchPage<BookView> search() {
+		return bookService.search(QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)], 0, 20);
+	}
+}
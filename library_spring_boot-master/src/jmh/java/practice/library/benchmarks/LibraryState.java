@@ -0,0 +1,72 @@
+package practice.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import practice.library.LibraryOnSpringBootApplication;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.BooksSearchIndex;
+import practice.library.search.PeoplePrefixIndex;
+import practice.library.search.PeopleSearchIndex;
+import practice.library.security.PersonDetails;
+import practice.library.support.LibraryDataGenerator;
+
+// Контекст приложения (Tomcat на случайном порту, он нужен цепочке фильтров безопасности) над H2 в памяти, заполненной LibraryDataGenerator.
+// Кэш выключен, чтобы замерялись запросы к базе; объёмы меняются через -p people=... -p books=...
+@State(Scope.Benchmark)
+public class LibraryState {
+
+	@Param("1000")
+	public int people;
+
+	@Param("10000")
+	public int books;
+
+	private ConfigurableApplicationContext context;
+
+	private PersonDetails admin;
+
+	@Setup(Level.Trial)
+	public void start() {
+		// Потоки JMH не наследуют контекст безопасности потока @Setup; стратегия задаётся до старта контекста,
+		// потому что бины Spring Security запоминают её при создании
+		SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+		context = new SpringApplicationBuilder(LibraryOnSpringBootApplication.class)
+				.properties("server.port=0",
+						"spring.cache.type=none",
+						"spring.jpa.properties.hibernate.generate_statistics=false",
+						"spring.main.banner-mode=off",
+						"logging.level.root=WARN")
+				.run();
+
+		String passwordHash = bean(PasswordEncoder.class).encode(LibraryDataGenerator.PASSWORD);
+		new LibraryDataGenerator(bean(JdbcTemplate.class), 42).generate(people, books, passwordHash);
+		bean(BooksSearchIndex.class).rebuild();
+		bean(PeopleSearchIndex.class).rebuild();
+		bean(PeoplePrefixIndex.class).rebuild();
+		bean(AvailabilityIndex.class).reconcile();
+
+		admin = new PersonDetails(bean(PeopleRepository.class).findPersonByUsername("admin").orElseThrow());
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		SecurityContextHolder.clearContext();
+		context.close();
+	}
+
+	public <T> T bean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	public PersonDetails admin() {
+		return admin;
+	}
+}
@@ -0,0 +1,46 @@
+package practice.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import practice.library.security.OffloadedPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+// Кодировщик собран как в SecurityConfig (BCrypt в отдельном пуле), стоимость задаётся параметром
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+	@Param({"10", "12"})
+	public int strength;
+
+	private OffloadedPasswordEncoder passwordEncoder;
+
+	private String hash;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		passwordEncoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(strength),
+				Runtime.getRuntime().availableProcessors(), 64, 30_000);
+		hash = passwordEncoder.encode("password");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		passwordEncoder.close();
+	}
+
+	@Benchmark
+	public String encode() {
+		return passwordEncoder.encode("password");
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return passwordEncoder.matches("password", hash);
+	}
+}
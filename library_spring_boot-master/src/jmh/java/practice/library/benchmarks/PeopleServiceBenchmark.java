@@ -0,0 +1,48 @@
+package practice.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.UserDetails;
+import practice.library.projections.LoanView;
+import practice.library.services.PeopleDetailService;
+import practice.library.services.PeopleService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeopleServiceBenchmark {
+
+	private PeopleService peopleService;
+
+	private PeopleDetailService peopleDetailService;
+
+	private long adminId;
+
+	private int people;
+
+	@Setup(Level.Trial)
+	public void setUp(LibraryState library) {
+		peopleService = library.bean(PeopleService.class);
+		peopleDetailService = library.bean(PeopleDetailService.class);
+		adminId = library.admin().getId();
+		people = library.people;
+	}
+
+	// Книги на руках с признаком просрочки: getBooks разрешён только самому читателю
+	@Benchmark
+	public List<LoanView> getBooks() {
+		return peopleService.getBooks(adminId);
+	}
+
+	@Benchmark
+	public UserDetails loadUserByUsername() {
+		int reader = 1 + ThreadLocalRandom.current().nextInt(Math.max(1, people - 1));
+		return peopleDetailService.loadUserByUsername("reader" + reader);
+	}
+}
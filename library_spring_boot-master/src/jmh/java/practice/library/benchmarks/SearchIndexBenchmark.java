@@ -0,0 +1,59 @@
+package practice.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import practice.library.search.SearchDocument;
+import practice.library.search.SearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Индекс триграмм сам по себе, без базы и контекста: видно, как время поиска зависит от размера каталога.
+// Словарь нарочно мал, так что частые слова совпадают с большой долей документов
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+	private static final String[] WORDS = {"тайна", "дом", "море", "война", "мир", "сад", "город", "ночь", "звезда",
+			"дорога", "остров", "зима", "лето", "река", "гора", "песня", "сердце", "путь", "время", "ветер"};
+
+	private static final String[] AUTHORS = {"Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров",
+			"Соколов", "Михайлов", "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов"};
+
+	private static final String[] QUERIES = {"тайна", "море война", "звезда 42", "остров", "Петров", "зевзда"};
+
+	// Как library.search.max-candidates в application.properties
+	private static final int MAX_CANDIDATES = 5000;
+
+	@Param({"10000", "100000", "1000000"})
+	public int documents;
+
+	private SearchIndex index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		List<SearchDocument> all = new ArrayList<>(documents);
+		for (int i = 0; i < documents; i++)
+			all.add(new SearchDocument(i, WORDS[random.nextInt(WORDS.length)] + " и "
+					+ WORDS[random.nextInt(WORDS.length)] + " " + i + " " + AUTHORS[random.nextInt(AUTHORS.length)]));
+		index = new SearchIndex(0.5, MAX_CANDIDATES) {};
+		index.rebuild(all);
+	}
+
+	@Benchmark
+	public List<Long> firstPage() {
+		return index.searchWithNext(QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)], 0, 20);
+	}
+
+	@Benchmark
+	public List<Long> tenthPage() {
+		return index.searchWithNext(QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)], 9, 20);
+	}
+}
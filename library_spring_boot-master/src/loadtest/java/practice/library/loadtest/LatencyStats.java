@@ -0,0 +1,63 @@
+package practice.library.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Задержки по каждому сценарию: хранятся все замеры, перцентили считаются по отсортированному массиву
+class LatencyStats {
+
+	private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+	void record(String endpoint, long nanos, boolean ok) {
+		samples.computeIfAbsent(endpoint, e -> new Samples()).add(nanos, ok);
+	}
+
+	Map<String, EndpointReport> report(double seconds) {
+		Map<String, EndpointReport> report = new TreeMap<>();
+		samples.forEach((endpoint, endpointSamples) -> report.put(endpoint, endpointSamples.report(seconds)));
+		return report;
+	}
+
+	record EndpointReport(int requests, int errors, double throughput,
+						  double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+
+		double errorRate() {
+			return requests == 0 ? 0 : (double) errors / requests;
+		}
+	}
+
+	private static final class Samples {
+
+		private long[] nanos = new long[1024];
+
+		private int count;
+
+		private int errors;
+
+		synchronized void add(long latency, boolean ok) {
+			if (count == nanos.length)
+				nanos = Arrays.copyOf(nanos, count * 2);
+			nanos[count++] = latency;
+			if (!ok)
+				errors++;
+		}
+
+		synchronized EndpointReport report(double seconds) {
+			long[] sorted = Arrays.copyOf(nanos, count);
+			Arrays.sort(sorted);
+			return new EndpointReport(count, errors, count / seconds,
+					percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+					count == 0 ? 0 : sorted[count - 1] / 1e6);
+		}
+
+		// Метод ближайшего ранга
+		private static double percentile(long[] sorted, double p) {
+			if (sorted.length == 0)
+				return 0;
+			int rank = (int) Math.ceil(p * sorted.length);
+			return sorted[Math.max(0, rank - 1)] / 1e6;
+		}
+	}
+}
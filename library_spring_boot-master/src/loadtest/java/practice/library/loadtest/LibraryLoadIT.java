@@ -0,0 +1,197 @@
+package practice.library.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ActiveProfilesResolver;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.BooksSearchIndex;
+import practice.library.search.PeoplePrefixIndex;
+import practice.library.search.PeopleSearchIndex;
+import practice.library.support.LibraryDataGenerator;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Нагрузочный прогон реальных веб-сценариев: mvn -Pload-tests verify (с -Pvirtual-threads под JDK 21 —
+// то же на виртуальных потоках). Объёмы и длительность: -Dload.books, -Dload.people, -Dload.users,
+// -Dload.duration-seconds; для 1M+ строк — файловая H2 через -Dspring.datasource.url=jdbc:h2:file:...
+// Отчёт пишется в target/load-test/report-<режим>.json, пороги — в load-thresholds.properties,
+// сравнение с прошлым отчётом — через -Dload.baseline=<файл> и допуск -Dload.tolerance
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"library.security.hashing.min-strength=10",
+		"library.security.hashing.max-strength=10",
+		"library.security.hashing.threads=0",
+		"library.security.hashing.queue-capacity=256",
+		// Все виртуальные пользователи входят с одного адреса
+		"library.security.login.ip-limit=1000000",
+		"spring.jpa.properties.hibernate.generate_statistics=false",
+		"logging.level.root=WARN"
+})
+@ActiveProfiles(resolver = LibraryLoadIT.ModeResolver.class)
+class LibraryLoadIT {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Autowired
+	private BooksSearchIndex booksSearchIndex;
+
+	@Autowired
+	private PeopleSearchIndex peopleSearchIndex;
+
+	@Autowired
+	private PeoplePrefixIndex peoplePrefixIndex;
+
+	@Autowired
+	private AvailabilityIndex availabilityIndex;
+
+	@Value("${load.people:1000}")
+	private int people;
+
+	@Value("${load.books:10000}")
+	private int books;
+
+	@Value("${load.users:32}")
+	private int users;
+
+	@Value("${load.warmup-seconds:10}")
+	private int warmupSeconds;
+
+	@Value("${load.duration-seconds:30}")
+	private int durationSeconds;
+
+	@Value("${load.seed:42}")
+	private long seed;
+
+	@Value("${load.baseline:}")
+	private String baseline;
+
+	@Value("${load.tolerance:0.25}")
+	private double tolerance;
+
+	@Test
+	void webFlowsStayWithinLatencyBudget() throws Exception {
+		new LibraryDataGenerator(jdbcTemplate, seed).generate(people, books, passwordEncoder.encode(LibraryDataGenerator.PASSWORD));
+		booksSearchIndex.rebuild();
+		peopleSearchIndex.rebuild();
+		peoplePrefixIndex.rebuild();
+		availabilityIndex.reconcile();
+
+		List<Map<String, Object>> accounts = jdbcTemplate.queryForList(
+				"select id, username from Person order by id limit ?", Math.min(users, people));
+		long firstBookId = jdbcTemplate.queryForObject("select min(id) from Book", Long.class);
+
+		LatencyStats stats = new LatencyStats();
+		long recordFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long deadline = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+		ExecutorService executor = Executors.newFixedThreadPool(users);
+		List<Future<?>> running = new ArrayList<>();
+		for (int i = 0; i < users; i++) {
+			Map<String, Object> account = accounts.get(i % accounts.size());
+			// Пользователи подключаются равномерно в течение прогрева, а не все разом
+			long startAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds) * i / users;
+			running.add(executor.submit(new VirtualUser(startAt, "http://localhost:" + port,
+					(String) account.get("username"), ((Number) account.get("id")).longValue(), books, firstBookId,
+					stats, recordFrom, deadline, seed + i)));
+		}
+		for (Future<?> user : running)
+			user.get(warmupSeconds + durationSeconds + 120L, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		Map<String, LatencyStats.EndpointReport> report = stats.report(durationSeconds);
+		print(report);
+		write(report);
+		checkThresholds(report);
+	}
+
+	private void checkThresholds(Map<String, LatencyStats.EndpointReport> report) throws Exception {
+		Properties thresholds = PropertiesLoaderUtils.loadProperties(new ClassPathResource("load-thresholds.properties"));
+		double maxErrorRate = Double.parseDouble(thresholds.getProperty("max-error-rate", "0.01"));
+		JsonNode previous = baseline.isBlank() ? null : new ObjectMapper().readTree(new File(baseline)).get("endpoints");
+
+		List<String> violations = new ArrayList<>();
+		report.forEach((endpoint, stats) -> {
+			if (stats.errorRate() > maxErrorRate)
+				violations.add(endpoint + ": доля ошибок " + stats.errorRate());
+			check(violations, endpoint, "p95", stats.p95Ms(), thresholds, previous);
+			check(violations, endpoint, "p99", stats.p99Ms(), thresholds, previous);
+		});
+		assertThat(violations).as("Превышены пороги нагрузочного теста").isEmpty();
+	}
+
+	private void check(List<String> violations, String endpoint, String percentile, double actual,
+					   Properties thresholds, JsonNode previous) {
+		String limit = thresholds.getProperty(endpoint + "." + percentile + "-ms");
+		if (limit != null && actual > Double.parseDouble(limit))
+			violations.add(endpoint + " " + percentile + " " + format(actual) + " мс > " + limit + " мс");
+
+		JsonNode before = previous == null ? null : previous.path(endpoint).get(percentile + "Ms");
+		if (before != null && actual > before.asDouble() * (1 + tolerance))
+			violations.add(endpoint + " " + percentile + " " + format(actual) + " мс, было " + format(before.asDouble()) + " мс");
+	}
+
+	private void write(Map<String, LatencyStats.EndpointReport> report) throws Exception {
+		File file = new File("target/load-test/report-" + ModeResolver.mode() + ".json");
+		file.getParentFile().mkdirs();
+
+		Map<String, Object> document = new LinkedHashMap<>();
+		document.put("mode", ModeResolver.mode());
+		document.put("people", people);
+		document.put("books", books);
+		document.put("users", users);
+		document.put("durationSeconds", durationSeconds);
+		document.put("endpoints", report);
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, document);
+	}
+
+	private void print(Map<String, LatencyStats.EndpointReport> report) {
+		System.out.printf("%nНагрузочный тест (%s): %d пользователей, %d с, %d книг, %d читателей%n",
+				ModeResolver.mode(), users, durationSeconds, books, people);
+		System.out.printf("%-20s %8s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms",
+				"p95 ms", "p99 ms", "max ms");
+		report.forEach((endpoint, stats) -> System.out.printf("%-20s %8d %7d %9.1f %9s %9s %9s %9s%n", endpoint,
+				stats.requests(), stats.errors(), stats.throughput(), format(stats.p50Ms()), format(stats.p95Ms()),
+				format(stats.p99Ms()), format(stats.maxMs())));
+	}
+
+	private static String format(double millis) {
+		return String.format(Locale.ROOT, "%.1f", millis);
+	}
+
+	// -Dload.mode=virtual включает профиль virtual (виртуальные потоки для Tomcat, нужна сборка с -Pvirtual-threads)
+	static class ModeResolver implements ActiveProfilesResolver {
+
+		static String mode() {
+			return System.getProperty("load.mode", "platform");
+		}
+
+		@Override
+		public String[] resolve(Class<?> testClass) {
+			return "virtual".equals(mode()) ? new String[]{"virtual"} : new String[0];
+		}
+	}
+}
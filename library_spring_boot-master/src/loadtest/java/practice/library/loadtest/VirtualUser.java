@@ -0,0 +1,178 @@
+package practice.library.loadtest;
+
+import practice.library.support.LibraryDataGenerator;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Один пользователь со своей сессией: входит через /process_login и ходит по страницам как браузер,
+// формы отправляются с CSRF-токеном и _method, как их рендерит Thymeleaf
+class VirtualUser implements Runnable {
+
+	private static final Pattern CSRF = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+	private static final String[] QUERIES = {"тайна", "море", "звезда", "остров дорога", "Петров", "сердце"};
+
+	private final String baseUrl;
+
+	private final String username;
+
+	private final long personId;
+
+	private final int books;
+
+	private final long firstBookId;
+
+	private final LatencyStats stats;
+
+	private final long startAt;
+
+	private final long recordFrom;
+
+	private final long deadline;
+
+	private final Random random;
+
+	private final HttpClient client;
+
+	private String csrf;
+
+	private boolean loggedIn;
+
+	VirtualUser(long startAt, String baseUrl, String username, long personId, int books, long firstBookId,
+				LatencyStats stats, long recordFrom, long deadline, long seed) {
+		this.startAt = startAt;
+		this.baseUrl = baseUrl;
+		this.username = username;
+		this.personId = personId;
+		this.books = books;
+		this.firstBookId = firstBookId;
+		this.stats = stats;
+		this.recordFrom = recordFrom;
+		this.deadline = deadline;
+		this.random = new Random(seed);
+		this.client = HttpClient.newBuilder()
+				.cookieHandler(new CookieManager())
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+	}
+
+	@Override
+	public void run() {
+		try {
+			TimeUnit.NANOSECONDS.sleep(Math.max(0, startAt - System.nanoTime()));
+			while (System.nanoTime() < deadline) {
+				try {
+					if (!loggedIn)
+						login();
+					else
+						step();
+				} catch (IOException e) {
+					// Сбой уже учтён в send с его задержкой; пользователь повторяет попытку после паузы
+					TimeUnit.MILLISECONDS.sleep(100);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void login() throws IOException, InterruptedException {
+		send("login.page", get("/auth/login"));
+		HttpResponse<String> response = send("login", post("/process_login",
+				form("username", username, "password", LibraryDataGenerator.PASSWORD)));
+		// Неудачный вход (в том числе отказ перегруженного пула BCrypt) — редирект на /auth/login?error,
+		// отказ ограничителя попыток — на /auth/login?blocked
+		String location = response.headers().firstValue("Location").orElse("error");
+		loggedIn = !location.contains("error") && !location.contains("blocked");
+		if (!loggedIn)
+			return;
+		// После входа токен меняется: берём новый со страницы с формой
+		send("books.search.page", get("/books/search"));
+	}
+
+	// Смесь сценариев примерно как у читателя: в основном просмотр и поиск, иногда выдача и возврат
+	private void step() throws IOException, InterruptedException {
+		int dice = random.nextInt(100);
+		if (dice < 35) {
+			int page = random.nextInt(Math.max(1, books / 20));
+			send("books.page", get("/books?page=" + page + "&books_per_page=20&sort_by_year=" + random.nextBoolean()));
+		} else if (dice < 50) {
+			send("books.first", get("/books"));
+		} else if (dice < 70) {
+			send("books.search", post("/books/search", form("pointer", QUERIES[random.nextInt(QUERIES.length)])));
+		} else if (dice < 85) {
+			send("people.show", get("/people/" + personId));
+		} else if (dice < 97) {
+			long bookId = firstBookId + random.nextInt(books);
+			send("books.take", post("/books/" + bookId + "/take", form("_method", "patch", "id", String.valueOf(personId))));
+			send("books.free", post("/books/" + bookId + "/free", form("_method", "patch")));
+		} else {
+			// Сессии не вечны: вход (BCrypt) повторяется и под нагрузкой, а не только на старте
+			send("logout", post("/logout", form()));
+			loggedIn = false;
+		}
+	}
+
+	private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		HttpResponse<String> response;
+		try {
+			response = client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+		} catch (IOException e) {
+			// Таймаут или обрыв соединения — неудачный запрос этого эндпоинта со своей задержкой
+			if (start >= recordFrom)
+				stats.record(endpoint, System.nanoTime() - start, false);
+			throw e;
+		}
+		long latency = System.nanoTime() - start;
+
+		Matcher token = CSRF.matcher(response.body());
+		if (token.find())
+			csrf = token.group(1);
+
+		// 409 — штатный исход гонки за книгу, а не ошибка сервера
+		int status = response.statusCode();
+		boolean ok = (status < 400 || status == 409)
+				&& !response.headers().firstValue("Location").orElse("").contains("error");
+		if (start >= recordFrom)
+			stats.record(endpoint, latency, ok);
+		return response;
+	}
+
+	private HttpRequest.Builder get(String path) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+	}
+
+	private HttpRequest.Builder post(String path, Map<String, String> form) {
+		form.put("_csrf", csrf);
+		String body = form.entrySet().stream()
+				.map(field -> field.getKey() + "=" + URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8))
+				.collect(Collectors.joining("&"));
+		return HttpRequest.newBuilder(URI.create(baseUrl + path))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.POST(HttpRequest.BodyPublishers.ofString(body));
+	}
+
+	private static Map<String, String> form(String... pairs) {
+		Map<String, String> form = new LinkedHashMap<>();
+		for (int i = 0; i < pairs.length; i += 2)
+			form.put(pairs[i], pairs[i + 1]);
+		return form;
+	}
+}
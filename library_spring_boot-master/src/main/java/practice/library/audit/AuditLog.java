@@ -0,0 +1,212 @@
+package practice.library.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import practice.library.models.AuditEvent;
+import practice.library.models.AuditEventType;
+import practice.library.models.Book;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Журнал изменений каталога и выдач. Запрос только кладёт событие в ограниченную очередь,
+// в базу события пишет пакетами фоновый поток; при переполненной очереди событие отбрасывается
+// и учитывается в library.audit.dropped, а не задерживает запрос
+public class AuditLog implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final String INSERT = "insert into audit_event (occurred_at, type, book_id, person_id, actor, details) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_DETAILS_LENGTH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BlockingQueue<AuditEvent> queue;
+
+    private final int batchSize;
+
+    private final ScheduledExecutorService writer;
+
+    private final Object flushLock = new Object();
+
+    private volatile Counter written;
+
+    private volatile Counter dropped;
+
+    private volatile Counter failed;
+
+    public AuditLog(JdbcTemplate jdbcTemplate, int queueCapacity, int batchSize, long flushMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Событие попадает в журнал, только если транзакция изменения зафиксирована
+    public void recordAfterCommit(AuditEventType type, Long bookId, Long personId, String details) {
+        AuditEvent event = new AuditEvent(new Date(), type, bookId, personId, currentActor(), truncate(details));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            offer(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                offer(event);
+            }
+        });
+    }
+
+    // Пишет всё, что накопилось в очереди; вызывается фоновым потоком, при остановке и в тестах
+    public void flush() {
+        synchronized (flushLock) {
+            List<AuditEvent> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Удаляет события старше срока хранения, а у более свежих, но старше compactAfter,
+    // оставляет только последнюю правку каждой книги: выдачи и возвраты хранятся до конца срока
+    public int purge(Duration retention, Duration compactAfter) {
+        long now = System.currentTimeMillis();
+        int expired = jdbcTemplate.update("delete from audit_event where occurred_at < ?",
+                new Timestamp(now - retention.toMillis()));
+        int compacted = jdbcTemplate.update("delete from audit_event where type = ? and occurred_at < ? and exists " +
+                        "(select 1 from audit_event newer where newer.book_id = audit_event.book_id " +
+                        "and newer.type = audit_event.type and newer.id > audit_event.id)",
+                AuditEventType.BOOK_UPDATED.name(), new Timestamp(now - compactAfter.toMillis()));
+        if (expired + compacted > 0)
+            log.info("Audit log maintenance: {} expired, {} compacted", expired, compacted);
+        return expired + compacted;
+    }
+
+    public void scheduleMaintenance(Duration retention, Duration compactAfter, long periodMillis) {
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                purge(retention, compactAfter);
+            } catch (DataAccessException e) {
+                log.error("Audit log maintenance failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.audit.queue", this, AuditLog::pending)
+                .description("Audit events waiting to be written")
+                .register(registry);
+        written = Counter.builder("library.audit.written")
+                .description("Audit events written to the database")
+                .register(registry);
+        dropped = Counter.builder("library.audit.dropped")
+                .description("Audit events dropped because the queue was full")
+                .register(registry);
+        failed = Counter.builder("library.audit.failed")
+                .description("Audit events lost because a batch insert failed")
+                .register(registry);
+    }
+
+    // Остаток очереди дописывается при остановке приложения
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        flushQuietly();
+    }
+
+    private void offer(AuditEvent event) {
+        if (!queue.offer(event)) {
+            increment(dropped, 1);
+            return;
+        }
+        if (queue.size() == batchSize) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Приложение останавливается, очередь допишет close()
+            }
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (statement, event) -> {
+                statement.setTimestamp(1, new Timestamp(event.getOccurredAt().getTime()));
+                statement.setString(2, event.getType().name());
+                setId(statement, 3, event.getBookId());
+                setId(statement, 4, event.getPersonId());
+                statement.setString(5, event.getActor());
+                statement.setString(6, event.getDetails());
+            });
+            increment(written, batch.size());
+        } catch (DataAccessException e) {
+            increment(failed, batch.size());
+            log.error("Failed to write {} audit events", batch.size(), e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Audit log flush failed", e);
+        }
+    }
+
+    private static void setId(PreparedStatement statement, int index, Long id) throws SQLException {
+        if (id == null)
+            statement.setNull(index, Types.BIGINT);
+        else
+            statement.setLong(index, id);
+    }
+
+    private static void increment(Counter counter, int amount) {
+        if (counter != null)
+            counter.increment(amount);
+    }
+
+    public static String describe(Book book) {
+        return "title=" + book.getTitle() + ", author=" + book.getAuthor() + ", yearOfProd=" + book.getYearOfProd();
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    private static String truncate(String details) {
+        if (details == null || details.length() <= MAX_DETAILS_LENGTH)
+            return details;
+        return details.substring(0, MAX_DETAILS_LENGTH);
+    }
+}
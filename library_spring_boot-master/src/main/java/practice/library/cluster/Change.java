@@ -0,0 +1,5 @@
+package practice.library.cluster;
+
+// Строка change_log: node — узел, зафиксировавший изменение
+public record Change(long id, String node, ChangeKind kind, long entityId) {
+}
@@ -0,0 +1,191 @@
+package practice.library.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.config.CacheConfig;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.*;
+import practice.library.views.ViewVersions;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+// Применяет строки change_log к состоянию узла в памяти. Индексы перечитывают текущие строки по всем изменениям,
+// и своим тоже: afterCommit двух транзакций одной книги могут выполниться не в порядке фиксации, а чтение после
+// обеих возвращает индекс к состоянию базы. Кэши и версии страниц для своих изменений сброшены уже при фиксации,
+// для чужих сбрасываются здесь — так же, как сбрасывают их @CacheEvict сервисов
+@Component
+public class ChangeApplier implements ChangeFeed.Listener {
+
+    private static final int MAX_IN_LIST = 1000;
+
+    private final BooksRepository booksRepository;
+
+    private final PeopleRepository peopleRepository;
+
+    private final BooksSearchIndex booksSearchIndex;
+
+    private final PeopleSearchIndex peopleSearchIndex;
+
+    private final PeoplePrefixIndex peoplePrefixIndex;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final CacheManager cacheManager;
+
+    private final ViewVersions viewVersions;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ChangeLog changeLog;
+
+    @Autowired
+    public ChangeApplier(BooksRepository booksRepository, PeopleRepository peopleRepository,
+                         BooksSearchIndex booksSearchIndex, PeopleSearchIndex peopleSearchIndex,
+                         PeoplePrefixIndex peoplePrefixIndex, AvailabilityIndex availabilityIndex,
+                         CacheManager cacheManager, ViewVersions viewVersions,
+                         TransactionTemplate transactionTemplate, ChangeLog changeLog) {
+        this.booksRepository = booksRepository;
+        this.peopleRepository = peopleRepository;
+        this.booksSearchIndex = booksSearchIndex;
+        this.peopleSearchIndex = peopleSearchIndex;
+        this.peoplePrefixIndex = peoplePrefixIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.cacheManager = cacheManager;
+        this.viewVersions = viewVersions;
+        this.transactionTemplate = transactionTemplate;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public void apply(List<Change> changes) {
+        Set<Long> books = new TreeSet<>();
+        Set<Long> remoteBooks = new TreeSet<>();
+        Set<Long> people = new TreeSet<>();
+        Set<Long> remotePeople = new TreeSet<>();
+        for (Change change : changes) {
+            boolean remote = !changeLog.node().equals(change.node());
+            if (change.kind() == ChangeKind.BOOK) {
+                books.add(change.entityId());
+                if (remote)
+                    remoteBooks.add(change.entityId());
+            } else {
+                people.add(change.entityId());
+                if (remote)
+                    remotePeople.add(change.entityId());
+            }
+        }
+        // Сначала люди: удалённый читатель отпускает книги в индексе доступности, а их строки перечитываются следом
+        if (!people.isEmpty())
+            applyPeople(people, remotePeople);
+        if (!books.isEmpty())
+            applyBooks(books, remoteBooks);
+    }
+
+    // Всё состояние в памяти строится заново по базе, а версии страниц меняются целиком
+    @Override
+    public void resync() {
+        // Чтение в транзакции на запись идёт на основную базу, а не на отстающую реплику
+        transactionTemplate.executeWithoutResult(status -> {
+            booksSearchIndex.rebuild();
+            peopleSearchIndex.rebuild();
+            peoplePrefixIndex.rebuild();
+        });
+        availabilityIndex.reconcile();
+        cacheManager.getCacheNames().forEach(name -> cache(name).clear());
+        viewVersions.touchAll();
+    }
+
+    private void applyBooks(Set<Long> ids, Set<Long> remote) {
+        Map<Long, SearchDocument> documents = new HashMap<>();
+        Map<Long, BookState> states = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (List<Long> chunk : chunks(ids)) {
+                documents.putAll(byId(booksRepository.findSearchDocumentsByIdIn(chunk), SearchDocument::id));
+                states.putAll(byId(booksRepository.findStatesByIdIn(chunk), BookState::id));
+            }
+        });
+
+        for (long id : ids) {
+            BookState state = states.get(id);
+            SearchDocument document = documents.get(id);
+            if (state == null || document == null) {
+                booksSearchIndex.remove(id);
+                availabilityIndex.remove(id);
+            } else {
+                booksSearchIndex.put(document);
+                availabilityIndex.put(id, state.ownerId());
+            }
+        }
+
+        if (remote.isEmpty())
+            return;
+        remote.forEach(cache(CacheConfig.BOOKS)::evict);
+        cache(CacheConfig.BOOK_PAGES).clear();
+        cache(CacheConfig.BOOK_SEARCH).clear();
+        // Версии меняются после сброса кэшей данных, как и при своей фиксации
+        for (long id : remote) {
+            if (states.containsKey(id))
+                viewVersions.touchBookAfterCommit(id);
+            else
+                viewVersions.removeBookAfterCommit(id);
+        }
+    }
+
+    private void applyPeople(Set<Long> ids, Set<Long> remote) {
+        Map<Long, SearchDocument> documents = new HashMap<>();
+        Map<Long, SearchDocument> prefixes = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (List<Long> chunk : chunks(ids)) {
+                documents.putAll(byId(peopleRepository.findSearchDocumentsByIdIn(chunk), SearchDocument::id));
+                prefixes.putAll(byId(peopleRepository.findPrefixDocumentsByIdIn(chunk), SearchDocument::id));
+            }
+        });
+
+        for (long id : ids) {
+            SearchDocument document = documents.get(id);
+            SearchDocument prefix = prefixes.get(id);
+            if (document == null || prefix == null) {
+                peopleSearchIndex.remove(id);
+                peoplePrefixIndex.remove(id);
+                availabilityIndex.release(id);
+            } else {
+                peopleSearchIndex.put(document);
+                peoplePrefixIndex.put(prefix);
+            }
+        }
+
+        if (remote.isEmpty())
+            return;
+        // Карточки книг показывают имя владельца, а логин по id не известен, поэтому как в PeopleService.update
+        // и delete сбрасываются целиком
+        remote.forEach(cache(CacheConfig.PEOPLE)::evict);
+        cache(CacheConfig.PEOPLE_PAGES).clear();
+        cache(CacheConfig.PEOPLE_SEARCH).clear();
+        cache(CacheConfig.BOOKS).clear();
+        cache(CacheConfig.USERS).clear();
+        viewVersions.touchPeopleAfterCommit();
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
+    }
+
+    private static List<List<Long>> chunks(Set<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += MAX_IN_LIST)
+            chunks.add(all.subList(from, Math.min(from + MAX_IN_LIST, all.size())));
+        return chunks;
+    }
+
+    private static <T> Map<Long, T> byId(List<T> found, ToLongFunction<T> id) {
+        Map<Long, T> map = new HashMap<>();
+        found.forEach(item -> map.put(id.applyAsLong(item), item));
+        return map;
+    }
+}
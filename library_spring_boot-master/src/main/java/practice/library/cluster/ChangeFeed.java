@@ -0,0 +1,227 @@
+package practice.library.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Читает change_log по возрастанию id и передаёт новые строки слушателю. id выдаются при вставке, а не при
+// фиксации, поэтому транзакция с меньшим id может стать видна позже большей: пропущенные id запоминаются
+// и перечитываются, пока строка не появится или не выйдет gapTimeout (откат оставляет дыру навсегда).
+// Время берётся только с часов самого узла: сравнивать часы разных узлов не нужно
+public class ChangeFeed implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static final String SELECT = "select id, node, kind, entity_id from change_log";
+
+    private static final RowMapper<Change> CHANGE = (rs, row) -> new Change(rs.getLong("id"), rs.getString("node"),
+            ChangeKind.valueOf(rs.getString("kind")), rs.getLong("entity_id"));
+
+    // Больше дыр бывает, только если узел безнадёжно отстал: тогда дешевле перечитать всё
+    private static final int MAX_GAPS = 10_000;
+
+    private static final int MAX_IN_LIST = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Listener listener;
+
+    private final int batchSize;
+
+    private final long gapTimeoutNanos;
+
+    private final Duration retention;
+
+    private final LongSupplier nanoTime;
+
+    private final ScheduledExecutorService poller;
+
+    // id пропущенной строки и время, когда пропуск замечен
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+    private long high;
+
+    private long polledAt;
+
+    // Перезагрузка не удалась и повторяется при следующем опросе
+    private boolean resyncPending;
+
+    private volatile Counter applied;
+
+    private volatile Counter resyncs;
+
+    // Начало чтения — последний id на момент создания: всё, что зафиксировано раньше, узел прочитает при
+    // построении индексов. Отсутствующие id среди последних batchSize строк могут принадлежать ещё не
+    // зафиксированным транзакциям и сразу считаются дырами
+    public ChangeFeed(JdbcTemplate jdbcTemplate, Listener listener, int batchSize, Duration gapTimeout,
+                      Duration retention, LongSupplier nanoTime) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = gapTimeout.toNanos();
+        this.retention = retention;
+        this.nanoTime = nanoTime;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        followFromEnd();
+    }
+
+    // Одно чтение: дыры, которые ещё ждут, и до batchSize новых строк. Состояние сдвигается только после
+    // того, как слушатель применил изменения, так что сбой повторяется со следующего опроса
+    public synchronized int poll() {
+        long now = nanoTime.getAsLong();
+        gaps.values().removeIf(noticed -> now - noticed > gapTimeoutNanos);
+
+        // Опрос не шёл дольше половины срока хранения: нужные строки могли уже удалить
+        if (resyncPending || now - polledAt > retention.toNanos() / 2) {
+            resync("change feed was not polled for too long");
+            return 0;
+        }
+
+        List<Change> changes = new ArrayList<>(gapChanges());
+        List<Change> fresh = jdbcTemplate.query(SELECT + " where id > ? order by id fetch first " + batchSize
+                + " rows only", CHANGE, high);
+
+        Map<Long, Long> newGaps = new LinkedHashMap<>();
+        long last = high;
+        for (Change change : fresh) {
+            if (change.id() - last - 1 + gaps.size() + newGaps.size() > MAX_GAPS) {
+                resync("too many change log gaps");
+                return 0;
+            }
+            for (long id = last + 1; id < change.id(); id++)
+                newGaps.put(id, now);
+            last = change.id();
+        }
+        changes.addAll(fresh);
+
+        if (!changes.isEmpty()) {
+            listener.apply(changes);
+            if (applied != null)
+                applied.increment(changes.size());
+        }
+        changes.forEach(change -> gaps.remove(change.id()));
+        gaps.putAll(newGaps);
+        high = last;
+        polledAt = now;
+        return changes.size();
+    }
+
+    public synchronized int gaps() {
+        return gaps.size();
+    }
+
+    public void schedulePolling(long pollMillis) {
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Строки старше срока хранения удаляет каждый узел; удаление повторяемо, поэтому узлам не нужно договариваться.
+    // Последняя строка остаётся всегда: по ней запущенный узел узнаёт, откуда читать журнал
+    public int purge() {
+        return jdbcTemplate.update("delete from change_log where created_at < ? " +
+                        "and id < (select max(id) from change_log)",
+                new Timestamp(System.currentTimeMillis() - retention.toMillis()));
+    }
+
+    public void scheduleMaintenance(long periodMillis) {
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                purge();
+            } catch (DataAccessException e) {
+                log.error("Change log maintenance failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.changes.gaps", this, ChangeFeed::gaps)
+                .description("Change log ids skipped by the feed and still awaited")
+                .register(registry);
+        applied = Counter.builder("library.changes.applied")
+                .description("Change log rows applied to the node's caches and indexes")
+                .register(registry);
+        resyncs = Counter.builder("library.changes.resyncs")
+                .description("Full reloads of the node's caches and indexes after falling behind the change log")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    private List<Change> gapChanges() {
+        if (gaps.isEmpty())
+            return List.of();
+        List<Change> found = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IN_LIST, ids.size()));
+            found.addAll(jdbcTemplate.query(SELECT + " where id in (" + String.join(",",
+                    Collections.nCopies(chunk.size(), "?")) + ")", CHANGE, chunk.toArray()));
+        }
+        return found;
+    }
+
+    // Перед полной перезагрузкой чтение переносится на текущий конец журнала: всё, что раньше, она прочитает сама
+    private void resync(String reason) {
+        log.warn("Reloading caches and indexes: {}", reason);
+        resyncPending = true;
+        followFromEnd();
+        listener.resync();
+        resyncPending = false;
+        if (resyncs != null)
+            resyncs.increment();
+    }
+
+    private void followFromEnd() {
+        Long last = jdbcTemplate.queryForObject("select max(id) from change_log", Long.class);
+        long end = last == null ? 0 : last;
+        long now = nanoTime.getAsLong();
+        Set<Long> recent = new HashSet<>(jdbcTemplate.queryForList("select id from change_log where id > ?",
+                Long.class, end - batchSize));
+        gaps.clear();
+        for (long id = Math.max(1, end - batchSize + 1); id < end; id++) {
+            if (!recent.contains(id))
+                gaps.put(id, now);
+        }
+        high = end;
+        polledAt = now;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("Change feed poll failed", e);
+        }
+    }
+
+    public interface Listener {
+
+        // Изменения могут повторяться и приходить не по порядку: слушатель перечитывает текущее состояние
+        void apply(List<Change> changes);
+
+        // Узел отстал от журнала: всё состояние в памяти перечитывается из базы
+        void resync();
+    }
+}
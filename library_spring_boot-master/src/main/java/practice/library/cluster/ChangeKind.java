@@ -0,0 +1,6 @@
+package practice.library.cluster;
+
+// Что изменилось: строка change_log хранит только вид и id, остальное узел перечитывает из базы
+public enum ChangeKind {
+    BOOK, PERSON
+}
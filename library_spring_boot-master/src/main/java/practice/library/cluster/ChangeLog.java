@@ -0,0 +1,77 @@
+package practice.library.cluster;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Записывает изменения книг и читателей в change_log для остальных узлов. Строки пишутся перед фиксацией
+// в той же транзакции, что и само изменение: узел видит строку ровно тогда, когда видит изменение,
+// а откаченное изменение не оставляет строки. Изменения одной транзакции уходят одним пакетом
+public class ChangeLog {
+
+    private static final String INSERT = "insert into change_log (node, kind, entity_id) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String node;
+
+    public ChangeLog(JdbcTemplate jdbcTemplate, String node) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.node = node;
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public void recordBook(long id) {
+        record(new Entry(ChangeKind.BOOK, id));
+    }
+
+    public void recordPerson(long id) {
+        record(new Entry(ChangeKind.PERSON, id));
+    }
+
+    private void record(Entry entry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(entry));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Entry> pending = (Set<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Entry> entries = new LinkedHashSet<>();
+            pending = entries;
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(new ArrayList<>(entries));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeLog.this);
+                }
+            });
+        }
+        pending.add(entry);
+    }
+
+    private void write(List<Entry> entries) {
+        jdbcTemplate.batchUpdate(INSERT, entries, entries.size(), (statement, entry) -> {
+            statement.setString(1, node);
+            statement.setString(2, entry.kind().name());
+            statement.setLong(3, entry.entityId());
+        });
+    }
+
+    private record Entry(ChangeKind kind, long entityId) {
+    }
+}
@@ -0,0 +1,35 @@
+package practice.library.cluster;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Время по часам базы для отметок, которые сравнивают разные узлы: часы узлов могут расходиться, а база у всех
+// одна. Смещение до часов базы замеряет sync(), между замерами время идёт по nanoTime узла, до первого замера —
+// по часам самого узла
+public class DatabaseClock {
+
+    private final LongSupplier nanoTime;
+
+    private volatile long offsetMillis;
+
+    public DatabaseClock(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.offsetMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong());
+    }
+
+    // Миллисекунды от начала эпохи по часам базы
+    public long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong()) + offsetMillis;
+    }
+
+    // Моментом ответа базы считается середина между отправкой запроса и получением ответа
+    public void sync(JdbcTemplate jdbcTemplate) {
+        long before = nanoTime.getAsLong();
+        double epochSeconds = jdbcTemplate.queryForObject("select extract(epoch from current_timestamp)",
+                Double.class);
+        long after = nanoTime.getAsLong();
+        offsetMillis = Math.round(epochSeconds * 1000) - TimeUnit.NANOSECONDS.toMillis(before + (after - before) / 2);
+    }
+}
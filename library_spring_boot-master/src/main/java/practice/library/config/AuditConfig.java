@@ -0,0 +1,23 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import practice.library.audit.AuditLog;
+
+import java.time.Duration;
+
+@Configuration
+@EnableConfigurationProperties(AuditProperties.class)
+public class AuditConfig {
+
+    @Bean(destroyMethod = "close")
+    public AuditLog auditLog(JdbcTemplate jdbcTemplate, AuditProperties properties) {
+        AuditLog auditLog = new AuditLog(jdbcTemplate, properties.queueCapacity(), properties.batchSize(),
+                properties.flushMillis());
+        auditLog.scheduleMaintenance(Duration.ofDays(properties.retentionDays()),
+                Duration.ofDays(properties.compactAfterDays()), properties.maintenanceMillis());
+        return auditLog;
+    }
+}
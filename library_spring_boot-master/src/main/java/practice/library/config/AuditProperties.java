@@ -0,0 +1,13 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Журнал изменений: очередь и пакеты фоновой записи, срок хранения и сжатие старых правок
+@ConfigurationProperties("library.audit")
+public record AuditProperties(int queueCapacity,
+                              int batchSize,
+                              long flushMillis,
+                              int retentionDays,
+                              int compactAfterDays,
+                              long maintenanceMillis) {
+}
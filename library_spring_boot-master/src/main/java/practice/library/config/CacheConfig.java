@@ -0,0 +1,61 @@
+package practice.library.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import practice.library.views.ViewFragment;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    public static final String BOOKS = "books";
+
+    public static final String BOOK_PAGES = "bookPages";
+
+    public static final String BOOK_SEARCH = "bookSearch";
+
+    public static final String PEOPLE = "people";
+
+    public static final String PEOPLE_PAGES = "peoplePages";
+
+    public static final String PEOPLE_SEARCH = "peopleSearch";
+
+    public static final String USERS = "users";
+
+    public static final String VIEWS = "views";
+
+    // Размер, время жизни и сбор статистики задаются через spring.cache.caffeine.spec,
+    // сброс записей откладывается до фиксации транзакции; spring.cache.type=none отключает кэш (для замеров)
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties,
+                                     @Value("${library.views.cache-max-bytes}") long viewsMaxBytes,
+                                     @Value("${library.views.cache-idle-minutes}") long viewsIdleMinutes) {
+        if (cacheProperties.getType() == CacheType.NONE)
+            return new NoOpCacheManager();
+
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setCacheSpecification(cacheProperties.getCaffeine().getSpec());
+        caffeineCacheManager.setCacheNames(cacheProperties.getCacheNames());
+        // Фрагменты страниц ограничены суммарным размером, а не числом записей; устаревшие версии уходят по простою
+        caffeineCacheManager.registerCustomCache(VIEWS, Caffeine.newBuilder()
+                .maximumWeight(viewsMaxBytes)
+                .weigher((key, value) -> value instanceof ViewFragment fragment ? fragment.bytes() : 1)
+                .expireAfterAccess(Duration.ofMinutes(viewsIdleMinutes))
+                .recordStats()
+                .build());
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
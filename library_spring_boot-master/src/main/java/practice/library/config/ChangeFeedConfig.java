@@ -0,0 +1,44 @@
+package practice.library.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import practice.library.cluster.ChangeApplier;
+import practice.library.cluster.ChangeFeed;
+import practice.library.cluster.ChangeLog;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+
+@Configuration
+@EnableConfigurationProperties(ChangeFeedProperties.class)
+public class ChangeFeedConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeedConfig.class);
+
+    // Имя узла новое при каждом запуске: перезапущенный узел не примет чужие строки за свои,
+    // даже если в контейнере у него тот же pid и хост
+    @Bean
+    public ChangeLog changeLog(JdbcTemplate jdbcTemplate) {
+        String node = ManagementFactory.getRuntimeMXBean().getName() + "/"
+                + UUID.randomUUID().toString().substring(0, 8);
+        log.info("Node {} records its changes in change_log", node);
+        return new ChangeLog(jdbcTemplate, node);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ChangeFeed changeFeed(JdbcTemplate jdbcTemplate, ChangeApplier changeApplier,
+                                 ChangeFeedProperties properties) {
+        ChangeFeed changeFeed = new ChangeFeed(jdbcTemplate, changeApplier, properties.batchSize(),
+                Duration.ofMillis(properties.gapTimeoutMillis()), Duration.ofMinutes(properties.retentionMinutes()),
+                System::nanoTime);
+        if (properties.pollMillis() > 0)
+            changeFeed.schedulePolling(properties.pollMillis());
+        changeFeed.scheduleMaintenance(properties.maintenanceMillis());
+        return changeFeed;
+    }
+}
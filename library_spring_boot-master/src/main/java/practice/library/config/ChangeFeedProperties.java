@@ -0,0 +1,13 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Согласование узлов через change_log: как часто и какими пакетами узел читает журнал, сколько ждёт строку
+// с пропущенным id и сколько строки хранятся. pollMillis=0 — без фонового опроса (тесты вызывают poll())
+@ConfigurationProperties("library.changes")
+public record ChangeFeedProperties(long pollMillis,
+                                   int batchSize,
+                                   long gapTimeoutMillis,
+                                   int retentionMinutes,
+                                   long maintenanceMillis) {
+}
@@ -0,0 +1,14 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Ограничение попыток входа: не больше usernameLimit попыток на имя пользователя и ipLimit на адрес клиента
+// за windowSeconds секунд; capacity — сколько ключей каждого вида помнит ограничитель в памяти узла,
+// maintenanceMillis — как часто из общей таблицы login_attempt удаляются вышедшие из окна интервалы
+@ConfigurationProperties("library.security.login")
+public record LoginThrottleProperties(int usernameLimit,
+                                      int ipLimit,
+                                      long windowSeconds,
+                                      int capacity,
+                                      long maintenanceMillis) {
+}
@@ -0,0 +1,80 @@
+package practice.library.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aspectj.lang.ProceedingJoinPoint;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import practice.library.monitoring.*;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(SqlMonitoringProperties.class)
+public class MetricsConfig {
+
+    // Таймер всех публичных методов сервисов, помеченных @Timed(MetricsConfig.SERVICE_TIMER)
+    public static final String SERVICE_TIMER = "library.service";
+
+    // Кроме класса и метода, вызов помечается маршрутом контроллера, из которого он сделан
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry, (ProceedingJoinPoint joinPoint) -> Tags.of(
+                "class", joinPoint.getStaticPart().getSignature().getDeclaringType().getSimpleName(),
+                "method", joinPoint.getStaticPart().getSignature().getName(),
+                "route", Routes.current()));
+    }
+
+    @Bean
+    public SlowQueryLog slowQueryLog(SqlMonitoringProperties properties) {
+        return new SlowQueryLog(properties.slowQueryLogSize(), properties.slowQueryMillis());
+    }
+
+    @Bean
+    public StatementCounter statementCounter(SlowQueryLog slowQueryLog) {
+        return new StatementCounter(slowQueryLog);
+    }
+
+    @Bean
+    public SlowQueriesEndpoint slowQueriesEndpoint(SlowQueryLog slowQueryLog) {
+        return new SlowQueriesEndpoint(slowQueryLog);
+    }
+
+    // Пул соединений оборачивается прокси, который замеряет каждое обращение к JDBC вместе с параметрами.
+    // Маршрутизатор реплик не оборачивается: его соединения и так проходят через внешний DataSource
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(ObjectProvider<StatementCounter> statementCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource
+                        || bean instanceof AbstractRoutingDataSource)
+                    return bean;
+                return ProxyDataSourceBuilder.create(dataSource)
+                        .name(beanName)
+                        .listener(statementCounter.getObject())
+                        .build();
+            }
+        };
+    }
+
+    // Раньше цепочки Spring Security, чтобы учитывались и запросы при входе
+    @Bean
+    public FilterRegistrationBean<RequestStatementsFilter> requestStatementsFilter(StatementCounter statementCounter,
+                                                                                  MeterRegistry meterRegistry,
+                                                                                  SqlMonitoringProperties properties) {
+        FilterRegistrationBean<RequestStatementsFilter> registration = new FilterRegistrationBean<>(
+                new RequestStatementsFilter(statementCounter, meterRegistry, properties));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
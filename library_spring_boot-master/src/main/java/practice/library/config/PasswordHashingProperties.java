@@ -0,0 +1,17 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Настройки хеширования паролей: целевое время BCrypt и размер выделенного пула (0 потоков - по числу ядер)
+@ConfigurationProperties("library.security.hashing")
+public record PasswordHashingProperties(long targetMillis,
+                                        int minStrength,
+                                        int maxStrength,
+                                        int threads,
+                                        int queueCapacity,
+                                        long timeoutMillis) {
+
+    public int poolSize() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,18 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+// Реплики только для чтения: library.datasource.replicas[0].url=...; без них работает один spring.datasource.
+// readYourWritesMillis — сколько после своей записи пользователь читает с основной базы (не меньше лага репликации)
+@ConfigurationProperties("library.datasource")
+public record ReplicaProperties(List<Replica> replicas,
+                                long healthCheckMillis,
+                                long readYourWritesMillis,
+                                long replicaConnectionTimeoutMillis,
+                                int replicaPoolSize) {
+
+    public record Replica(String url, String username, String password) {
+    }
+}
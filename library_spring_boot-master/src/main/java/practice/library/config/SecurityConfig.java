@@ -1,22 +1,40 @@
 package practice.library.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import practice.library.security.BCryptStrength;
+import practice.library.security.LoginAttempts;
+import practice.library.security.LoginThrottle;
+import practice.library.security.LoginThrottleFilter;
+import practice.library.security.OffloadedPasswordEncoder;
 import practice.library.services.PeopleDetailService;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
+@EnableConfigurationProperties({PasswordHashingProperties.class, LoginThrottleProperties.class})
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
     private final PeopleDetailService peopleDetailService;
 
     @Autowired
@@ -25,17 +43,27 @@ public class SecurityConfig {
     }
 
     @Autowired
-    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+    protected void configure(AuthenticationManagerBuilder auth, PasswordEncoder passwordEncoder) throws Exception {
         auth.userDetailsService(peopleDetailService)
-                .passwordEncoder(getPasswordEncoder());
+                .passwordEncoder(passwordEncoder);
     }
 
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, LoginThrottle loginThrottle) throws Exception {
         http
+                .addFilterBefore(new LoginThrottleFilter(loginThrottle, "/process_login", "/auth/login?blocked"),
+                        UsernamePasswordAuthenticationFilter.class)
                 .authorizeHttpRequests()
                 .requestMatchers("/auth/login", "/auth/registration", "/error")
                 .permitAll()
+                // Проверка живости и сбор метрик без входа; остальные эндпоинты Actuator — только администратору
+                .requestMatchers(EndpointRequest.to("health", "prometheus"))
+                .permitAll()
+                .requestMatchers(EndpointRequest.toAnyEndpoint())
+                .hasRole("ADMIN")
+                // Выгрузка пишет заголовки и тело до вызова сервиса, поэтому доступ проверяется ещё в фильтре
+                .requestMatchers("/api/v1/export/people", "/api/v1/export/loans")
+                .hasRole("ADMIN")
                 .anyRequest()
                 .hasAnyRole("USER", "ADMIN")
                 .and()
@@ -47,8 +75,33 @@ public class SecurityConfig {
         return http.build();
     }
 
+    @Bean(destroyMethod = "close")
+    public LoginAttempts loginAttempts(JdbcTemplate jdbcTemplate, LoginThrottleProperties properties) {
+        LoginAttempts loginAttempts = new LoginAttempts(jdbcTemplate,
+                TimeUnit.SECONDS.toMillis(properties.windowSeconds()), System::nanoTime);
+        loginAttempts.scheduleMaintenance(properties.maintenanceMillis());
+        return loginAttempts;
+    }
+
     @Bean
-    public PasswordEncoder getPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public LoginThrottle loginThrottle(LoginThrottleProperties properties, LoginAttempts loginAttempts) {
+        return new LoginThrottle(properties.usernameLimit(), properties.ipLimit(),
+                TimeUnit.SECONDS.toNanos(properties.windowSeconds()), properties.capacity(), System::nanoTime,
+                loginAttempts);
+    }
+
+    // Устаревшие хеши (без префикса или с меньшей стоимостью) перехешируются при входе через PeopleDetailService
+    @Bean
+    public OffloadedPasswordEncoder getPasswordEncoder(PasswordHashingProperties properties) {
+        int strength = BCryptStrength.calibrate(properties.targetMillis(),
+                properties.minStrength(), properties.maxStrength());
+        log.info("BCrypt strength {} calibrated for {} ms", strength, properties.targetMillis());
+
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        return new OffloadedPasswordEncoder(delegating, properties.poolSize(),
+                properties.queueCapacity(), properties.timeoutMillis());
     }
 }
@@ -0,0 +1,58 @@
+package practice.library.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import practice.library.security.CompactSessionSerializer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Сессии хранятся вне контейнера сервлетов, чтобы запросы одного пользователя мог обслуживать любой узел.
+// По умолчанию — таблицы spring_session в основной базе (миграция V6); memory — хранилище внутри узла
+@Configuration
+@EnableConfigurationProperties(SessionStoreProperties.class)
+public class SessionConfig {
+
+    @Bean
+    public CompactSessionSerializer compactSessionSerializer() {
+        return new CompactSessionSerializer(SessionConfig.class.getClassLoader());
+    }
+
+    // Имя бина задано Spring Session: им сериализуются атрибуты в JdbcIndexedSessionRepository
+    @Bean("springSessionConversionService")
+    public ConversionService springSessionConversionService(CompactSessionSerializer serializer) {
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, serializer::serialize);
+        conversionService.addConverter(byte[].class, Object.class, serializer::deserialize);
+        return conversionService;
+    }
+
+    // Истёкшая сессия не отдаётся при чтении и удаляется сразу; плановая очистка (spring.session.jdbc.cleanup-cron)
+    // убирает остальные порциями, чтобы не держать долгую блокировку на таблице
+    @Bean
+    @ConditionalOnProperty(name = "library.session.store", havingValue = "jdbc", matchIfMissing = true)
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> sessionSweepCustomizer(
+            SessionStoreProperties properties) {
+        return repository -> repository.setDeleteSessionsByExpiryTimeQuery("delete from %TABLE_NAME% "
+                + "where primary_id in (select primary_id from %TABLE_NAME% where expiry_time < ? "
+                + "fetch first " + properties.sweepBatchSize() + " rows only)");
+    }
+
+    @Configuration
+    @EnableSpringHttpSession
+    @ConditionalOnProperty(name = "library.session.store", havingValue = "memory")
+    static class MemorySessionConfig {
+
+        @Bean
+        public MapSessionRepository sessionRepository() {
+            return new MapSessionRepository(new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Где хранятся HTTP-сессии: jdbc — в общей базе (несколько узлов без sticky-сессий), memory — в памяти узла
+// (один узел, локальный запуск). sweepBatchSize — сколько истёкших сессий удаляет одна плановая очистка
+@ConfigurationProperties("library.session")
+public record SessionStoreProperties(Store store,
+                                     int sweepBatchSize) {
+
+    public enum Store {
+        JDBC, MEMORY
+    }
+}
@@ -0,0 +1,20 @@
+package practice.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+
+// Бюджет SQL на один HTTP-запрос и журнал медленных запросов.
+// statementBudget можно переопределить для маршрута: library.sql.routes[/books/{id}]=3
+@ConfigurationProperties("library.sql")
+public record SqlMonitoringProperties(int statementBudget,
+                                      long jdbcMillisBudget,
+                                      boolean responseHeaders,
+                                      long slowQueryMillis,
+                                      int slowQueryLogSize,
+                                      Map<String, Integer> routes) {
+
+    public int statementBudget(String route) {
+        return routes == null ? statementBudget : routes.getOrDefault(route, statementBudget);
+    }
+}
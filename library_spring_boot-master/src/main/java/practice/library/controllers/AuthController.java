@@ -1,5 +1,6 @@
 package practice.library.controllers;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import practice.library.models.Person;
 import practice.library.services.RegistrationService;
+import practice.library.util.PasswordHashingUnavailableException;
 import practice.library.util.PersonValidator;
 
 @Controller
@@ -38,7 +40,7 @@ public class AuthController {
 
     @PostMapping("/registration")
     public String performRegistration(@ModelAttribute("person") @Valid Person person,
-                                      BindingResult bindingResult) {
+                                      BindingResult bindingResult, HttpServletResponse response) {
 
         personValidator.validate(person, bindingResult);
 
@@ -46,7 +48,14 @@ public class AuthController {
             return "auth/registration";
         }
 
-        registrationService.register(person);
+        // Пароль не успели захешировать: форма возвращается с ошибкой и статусом 503, а не страницей ошибки 500
+        try {
+            registrationService.register(person);
+        } catch (PasswordHashingUnavailableException e) {
+            bindingResult.rejectValue("password", "hashing.unavailable", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return "auth/registration";
+        }
 
         return "redirect:/auth/login";
     }
@@ -1,17 +1,32 @@
 package practice.library.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import practice.library.models.Book;
 import practice.library.models.Person;
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+import practice.library.projections.OverdueLoanView;
 import practice.library.security.PersonDetails;
 import practice.library.services.BookService;
 import practice.library.services.PeopleService;
+import practice.library.util.KeysetPage;
+import practice.library.util.SearchPage;
+import practice.library.views.FragmentCache;
+import practice.library.views.ViewKey;
+import practice.library.views.ViewVersions;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/books")
@@ -21,42 +36,86 @@ public class BooksController {
 
     private final PeopleService peopleService;
 
+    private final FragmentCache fragmentCache;
+
+    private final ViewVersions viewVersions;
+
     @Autowired
-    public BooksController(BookService bookService, PeopleService peopleService) {
+    public BooksController(BookService bookService, PeopleService peopleService,
+                           FragmentCache fragmentCache, ViewVersions viewVersions) {
         this.bookService = bookService;
         this.peopleService = peopleService;
+        this.fragmentCache = fragmentCache;
+        this.viewVersions = viewVersions;
     }
 
     @GetMapping()
-    public String index(Model model,
+    public String index(Model model, HttpServletRequest request, HttpServletResponse response,
                         @RequestParam(value = "page", required = false) Integer pageNumber,
                         @RequestParam(value = "books_per_page", required = false) Integer booksPerPage,
-                        @RequestParam(value = "sort_by_year", required = false) boolean sorted) {
-        roleChecker(model);
-
-        if(pageNumber == null || booksPerPage == null) {
-            model.addAttribute("books", bookService.index(sorted));
-        } else {
-            model.addAttribute("books", bookService.index(pageNumber, booksPerPage, sorted));
-        }
+                        @RequestParam(value = "sort_by_year", required = false) boolean sorted,
+                        @RequestParam(value = "cursor", required = false) String cursor,
+                        @RequestParam(value = "available", required = false) boolean available) {
+        String role = roleChecker(model);
+        ViewVersions.Stamp stamp = viewVersions.catalog();
+        ViewKey key = new ViewKey("books/list", role, request.getQueryString(), stamp.version());
+        if (fragmentCache.notModified(key, stamp.lastModified(), request, response))
+            return null;
+
+        model.addAttribute("availability", bookService.availability());
+        model.addAttribute("list", fragmentCache.render(key, request, response, () -> {
+            Map<String, Object> variables = new HashMap<>();
+            if (available) {
+                KeysetPage<?> page = bookService.available(cursor, booksPerPage);
+                variables.put("books", page.content());
+                variables.put("nextCursor", page.nextCursor());
+            } else if (cursor != null) {
+                KeysetPage<?> page = bookService.index(cursor, booksPerPage);
+                variables.put("books", page.content());
+                variables.put("nextCursor", page.nextCursor());
+            } else if(pageNumber == null || booksPerPage == null) {
+                variables.put("books", bookService.index(sorted));
+            } else {
+                variables.put("books", bookService.index(pageNumber, booksPerPage, sorted));
+            }
+            return variables;
+        }));
         return "books/index";
     }
 
+    @GetMapping("/overdue")
+    public String overdue(Model model,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "books_per_page", required = false) Integer booksPerPage) {
+        KeysetPage<OverdueLoanView> page = bookService.overdue(cursor, booksPerPage);
+        model.addAttribute("loans", page.content());
+        model.addAttribute("nextCursor", page.nextCursor());
+        return "books/overdue";
+    }
+
+    // Карточка зависит от самой книги и от имён читателей. Формы под ней выбираются по той же проекции,
+    // что и карточка: индекс доступности мог бы разойтись с ней на время фиксации выдачи
     @GetMapping("/{id}")
     public String show(@PathVariable("id") int id, Model model,
-                       @ModelAttribute("person") Person person) {
-        roleChecker(model);
-
-        model.addAttribute("book", bookService.show(id));
-        if (bookService.getOwner(id) != null) {
-            model.addAttribute("owner", bookService.getOwner(id));
-        } else {
-            if (model.containsAttribute("isAdmin")){
-                model.addAttribute("people", peopleService.index());
-            }
-
-        }
-
+                       HttpServletRequest request, HttpServletResponse response) {
+        String role = roleChecker(model);
+        ViewVersions.Stamp stamp = viewVersions.book(id).latest(viewVersions.people());
+        ViewKey key = new ViewKey("books/card", role, String.valueOf(id), stamp.version());
+        if (fragmentCache.notModified(key, stamp.lastModified(), request, response))
+            return null;
+
+        BookCardView book = bookService.card(id);
+        if (book == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Книга не найдена");
+
+        model.addAttribute("bookId", id);
+        // Читателя для выдачи администратор выбирает подсказками через /api/v1/people/lookup
+        model.addAttribute("taken", book.getOwnerId() != null);
+        model.addAttribute("card", fragmentCache.render(key, request, response, () -> {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("book", book);
+            return variables;
+        }));
         return "books/show";
     }
 
@@ -108,8 +167,12 @@ public class BooksController {
 
     @PostMapping("/search")
     public String search(@ModelAttribute("pointer") String pointer,
+                         @RequestParam(value = "page", defaultValue = "0") int page,
                          Model model) {
-        model.addAttribute("founded", bookService.search(pointer));
+        SearchPage<BookView> found = bookService.search(pointer, page, null);
+        model.addAttribute("founded", found.content());
+        model.addAttribute("hasNext", found.hasNext());
+        model.addAttribute("page", page);
         return "books/search";
     }
 
@@ -126,10 +189,13 @@ public class BooksController {
         return "redirect:/books/" + id;
     }
 
-    public void roleChecker(Model model) {
-        if(peopleService.getPersonDetails().getPerson().getRole().equals("ROLE_ADMIN"))
+    // Роль возвращается для ключа кэша фрагментов: от неё зависят разделы isAdmin/isUser
+    public String roleChecker(Model model) {
+        if(peopleService.getPersonDetails().isAdmin()) {
             model.addAttribute("isAdmin", true);
-        else
-            model.addAttribute("isUser", true);
+            return "ROLE_ADMIN";
+        }
+        model.addAttribute("isUser", true);
+        return "ROLE_USER";
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package practice.library.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -7,8 +9,19 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import practice.library.models.Person;
+import practice.library.projections.PersonView;
 import practice.library.services.BookService;
 import practice.library.services.PeopleService;
+import practice.library.util.KeysetPage;
+import practice.library.util.PasswordHashingUnavailableException;
+import practice.library.util.SearchPage;
+import practice.library.views.FragmentCache;
+import practice.library.views.ViewKey;
+import practice.library.views.ViewVersions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 
@@ -20,24 +33,48 @@ public class PeopleController {
 
     private final BookService bookService;
 
+    private final FragmentCache fragmentCache;
+
+    private final ViewVersions viewVersions;
+
     @Autowired
-    public PeopleController(PeopleService peopleService, BookService bookService) {
+    public PeopleController(PeopleService peopleService, BookService bookService,
+                            FragmentCache fragmentCache, ViewVersions viewVersions) {
         this.peopleService = peopleService;
         this.bookService = bookService;
+        this.fragmentCache = fragmentCache;
+        this.viewVersions = viewVersions;
     }
 
     @GetMapping()
-    public String index(Model model,
+    public String index(Model model, HttpServletRequest request, HttpServletResponse response,
                         @RequestParam(value = "page", required = false) Integer pageNumber,
                         @RequestParam(value = "people_per_page", required = false) Integer peoplePerPage,
-                        @RequestParam(value = "sort_by_year", required = false) boolean sorted) {
-        roleChecker(model);
-
-        if(pageNumber == null || peoplePerPage == null) {
-            model.addAttribute("people", peopleService.index(sorted));
-        } else {
-            model.addAttribute("people", peopleService.index(pageNumber, peoplePerPage, sorted));
-        }
+                        @RequestParam(value = "sort_by_year", required = false) boolean sorted,
+                        @RequestParam(value = "cursor", required = false) String cursor) {
+        String role = roleChecker(model);
+        // Значки с числом книг на руках зависят и от выдач, поэтому версия — самая свежая из двух
+        ViewVersions.Stamp stamp = viewVersions.people().latest(viewVersions.catalog());
+        ViewKey key = new ViewKey("people/list", role, request.getQueryString(), stamp.version());
+        if (fragmentCache.notModified(key, stamp.lastModified(), request, response))
+            return null;
+
+        model.addAttribute("list", fragmentCache.render(key, request, response, () -> {
+            Map<String, Object> variables = new HashMap<>();
+            List<PersonView> people;
+            if (cursor != null) {
+                KeysetPage<PersonView> page = peopleService.index(cursor, peoplePerPage);
+                people = page.content();
+                variables.put("nextCursor", page.nextCursor());
+            } else if(pageNumber == null || peoplePerPage == null) {
+                people = peopleService.index(sorted);
+            } else {
+                people = peopleService.index(pageNumber, peoplePerPage, sorted);
+            }
+            variables.put("people", people);
+            variables.put("loanCounts", peopleService.loanCounts(people));
+            return variables;
+        }));
         return "people/index";
     }
 
@@ -45,7 +82,7 @@ public class PeopleController {
     public String show(@PathVariable("id") int id, Model model) {
         roleChecker(model);
 
-        model.addAttribute("person", peopleService.show(id));
+        model.addAttribute("person", peopleService.profile(id));
         model.addAttribute("books", peopleService.getBooks(id));
         return "people/show";
     }
@@ -74,12 +111,18 @@ public class PeopleController {
 
     @PatchMapping("/{id}")
     public String update(@ModelAttribute("person") @Valid Person person, BindingResult bindingResult,
-                         @PathVariable("id") int id) {
+                         @PathVariable("id") int id, HttpServletResponse response) {
 
         if (bindingResult.hasErrors())
             return "people/edit";
 
-        peopleService.update(id, person);
+        try {
+            peopleService.update(id, person);
+        } catch (PasswordHashingUnavailableException e) {
+            bindingResult.rejectValue("password", "hashing.unavailable", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return "people/edit";
+        }
         return "redirect:/people/{id}";
     }
 
@@ -98,15 +141,22 @@ public class PeopleController {
 
     @PostMapping("/search")
     public String search(@ModelAttribute("pointer") String pointer,
+                         @RequestParam(value = "page", defaultValue = "0") int page,
                          Model model) {
-        model.addAttribute("founded", peopleService.search(pointer));
+        SearchPage<PersonView> found = peopleService.search(pointer, page, null);
+        model.addAttribute("founded", found.content());
+        model.addAttribute("hasNext", found.hasNext());
+        model.addAttribute("page", page);
         return "people/search";
     }
 
-    public void roleChecker(Model model) {
-        if(peopleService.getPersonDetails().getPerson().getRole().equals("ROLE_ADMIN"))
+    // Роль возвращается для ключа кэша фрагментов: от неё зависят разделы isAdmin/isUser
+    public String roleChecker(Model model) {
+        if(peopleService.getPersonDetails().isAdmin()) {
             model.addAttribute("isAdmin", true);
-        else
-            model.addAttribute("isUser", true);
+            return "ROLE_ADMIN";
+        }
+        model.addAttribute("isUser", true);
+        return "ROLE_USER";
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package practice.library.controllers.api;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import practice.library.dto.PageDTO;
+
+// Ссылки на следующую страницу: в теле ответа и в заголовке Link (RFC 8288)
+final class ApiLinks {
+
+    private ApiLinks() {
+    }
+
+    static String withParam(String name, String value) {
+        return ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam(name, value)
+                .toUriString();
+    }
+
+    static <T> ResponseEntity<PageDTO<T>> page(PageDTO<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.next() != null)
+            response.header(HttpHeaders.LINK, "<" + page.next() + ">; rel=\"next\"");
+        return response.body(page);
+    }
+}
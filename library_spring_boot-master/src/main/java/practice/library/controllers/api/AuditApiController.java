@@ -0,0 +1,41 @@
+package practice.library.controllers.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import practice.library.dto.AuditEventDTO;
+import practice.library.dto.PageDTO;
+import practice.library.models.AuditEvent;
+import practice.library.services.AuditService;
+import practice.library.util.KeysetPage;
+
+@RestController
+@RequestMapping("/api/v1/audit")
+public class AuditApiController {
+
+    private final AuditService auditService;
+
+    @Autowired
+    public AuditApiController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    @GetMapping("/books/{id}")
+    public ResponseEntity<PageDTO<AuditEventDTO>> book(@PathVariable("id") long id,
+                                                       @RequestParam(value = "cursor", defaultValue = "") String cursor,
+                                                       @RequestParam(value = "size", required = false) Integer size) {
+        return page(auditService.forBook(id, cursor, size));
+    }
+
+    @GetMapping("/people/{id}")
+    public ResponseEntity<PageDTO<AuditEventDTO>> person(@PathVariable("id") long id,
+                                                         @RequestParam(value = "cursor", defaultValue = "") String cursor,
+                                                         @RequestParam(value = "size", required = false) Integer size) {
+        return page(auditService.forPerson(id, cursor, size));
+    }
+
+    private static ResponseEntity<PageDTO<AuditEventDTO>> page(KeysetPage<AuditEvent> page) {
+        String next = page.hasNext() ? ApiLinks.withParam("cursor", page.nextCursor()) : null;
+        return ApiLinks.page(PageDTO.of(page.content(), AuditEventDTO::from, next));
+    }
+}
@@ -0,0 +1,92 @@
+package practice.library.controllers.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import practice.library.dto.BookDTO;
+import practice.library.dto.LoanRequestDTO;
+import practice.library.dto.PageDTO;
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+import practice.library.services.BookImportService;
+import practice.library.services.BookService;
+import practice.library.util.Availability;
+import practice.library.util.BulkLoanResult;
+import practice.library.util.ImportReport;
+import practice.library.util.KeysetPage;
+import practice.library.util.SearchPage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/books")
+public class BooksApiController {
+
+    private final BookService bookService;
+
+    private final BookImportService bookImportService;
+
+    @Autowired
+    public BooksApiController(BookService bookService, BookImportService bookImportService) {
+        this.bookService = bookService;
+        this.bookImportService = bookImportService;
+    }
+
+    @GetMapping()
+    public ResponseEntity<PageDTO<BookDTO>> index(@RequestParam(value = "cursor", defaultValue = "") String cursor,
+                                                  @RequestParam(value = "size", required = false) Integer size,
+                                                  @RequestParam(value = "available", required = false) boolean available) {
+        KeysetPage<BookView> page = available ? bookService.available(cursor, size) : bookService.index(cursor, size);
+        String next = page.hasNext() ? ApiLinks.withParam("cursor", page.nextCursor()) : null;
+        return ApiLinks.page(PageDTO.of(page.content(), BookDTO::from, next));
+    }
+
+    @GetMapping("/availability")
+    public Availability availability() {
+        return bookService.availability();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BookDTO> show(@PathVariable("id") long id) {
+        BookCardView book = bookService.card(id);
+        if (book == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(BookDTO.from(book));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<PageDTO<BookDTO>> search(@RequestParam("q") String query,
+                                                   @RequestParam(value = "page", defaultValue = "0") int page,
+                                                   @RequestParam(value = "size", required = false) Integer size) {
+        SearchPage<BookView> found = bookService.search(query, page, size);
+        String next = found.hasNext() ? ApiLinks.withParam("page", String.valueOf(page + 1)) : null;
+        return ApiLinks.page(PageDTO.of(found.content(), BookDTO::from, next));
+    }
+
+    @PostMapping("/take")
+    public BulkLoanResult take(@RequestBody LoanRequestDTO request) {
+        if (request.personId() == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан читатель");
+        return bookService.takeBooks(request.bookIds(), request.personId());
+    }
+
+    @PostMapping("/free")
+    public BulkLoanResult free(@RequestBody LoanRequestDTO request) {
+        return bookService.freeBooks(request.bookIds());
+    }
+
+    // Тело читается потоком, файл целиком в памяти не держится
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ImportReport importCsv(InputStream body) throws IOException {
+        return bookImportService.importCsv(body);
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportReport importJson(InputStream body) throws IOException {
+        return bookImportService.importJson(body);
+    }
+}
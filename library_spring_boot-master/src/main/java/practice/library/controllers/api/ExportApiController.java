@@ -0,0 +1,74 @@
+package practice.library.controllers.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import practice.library.services.ExportService;
+import practice.library.util.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Полная выгрузка каталога, читателей и выдач файлом: ?format=csv|ndjson, ?gzip=true для сжатого файла
+@RestController
+@RequestMapping("/api/v1/export")
+public class ExportApiController {
+
+    private final ExportService exportService;
+
+    @Autowired
+    public ExportApiController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/books")
+    public void books(@RequestParam(value = "format", defaultValue = "csv") String format,
+                      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        try (OutputStream out = open("books", exportFormat, gzip, request, response)) {
+            exportService.exportBooks(exportFormat, out);
+        }
+    }
+
+    @GetMapping("/people")
+    public void people(@RequestParam(value = "format", defaultValue = "csv") String format,
+                       @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        try (OutputStream out = open("people", exportFormat, gzip, request, response)) {
+            exportService.exportPeople(exportFormat, out);
+        }
+    }
+
+    @GetMapping("/loans")
+    public void loans(@RequestParam(value = "format", defaultValue = "csv") String format,
+                      @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        try (OutputStream out = open("loans", exportFormat, gzip, request, response)) {
+            exportService.exportLoans(exportFormat, out);
+        }
+    }
+
+    // Тело пишется сразу в ответ: фильтр ETag не должен буферизовать его целиком
+    private static OutputStream open(String name, ExportFormat format, boolean gzip,
+                                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+
+        String filename = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+
+        return gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream();
+    }
+}
@@ -0,0 +1,58 @@
+package practice.library.controllers.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import practice.library.dto.PageDTO;
+import practice.library.dto.PersonDTO;
+import practice.library.projections.PersonView;
+import practice.library.services.PeopleService;
+import practice.library.util.KeysetPage;
+import practice.library.util.SearchPage;
+
+@RestController
+@RequestMapping("/api/v1/people")
+public class PeopleApiController {
+
+    private final PeopleService peopleService;
+
+    @Autowired
+    public PeopleApiController(PeopleService peopleService) {
+        this.peopleService = peopleService;
+    }
+
+    @GetMapping()
+    public ResponseEntity<PageDTO<PersonDTO>> index(@RequestParam(value = "cursor", defaultValue = "") String cursor,
+                                                    @RequestParam(value = "size", required = false) Integer size) {
+        KeysetPage<PersonView> page = peopleService.index(cursor, size);
+        String next = page.hasNext() ? ApiLinks.withParam("cursor", page.nextCursor()) : null;
+        return ApiLinks.page(PageDTO.of(page.content(), PersonDTO::from, next));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PersonDTO> show(@PathVariable("id") long id) {
+        PersonView person = peopleService.profile(id);
+        if (person == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(PersonDTO.from(person));
+    }
+
+    // Подсказки для выбора читателя по началу имени или логина
+    @GetMapping("/lookup")
+    public ResponseEntity<PageDTO<PersonDTO>> lookup(@RequestParam("q") String query,
+                                                     @RequestParam(value = "page", defaultValue = "0") int page,
+                                                     @RequestParam(value = "size", required = false) Integer size) {
+        SearchPage<PersonView> found = peopleService.lookup(query, page, size);
+        String next = found.hasNext() ? ApiLinks.withParam("page", String.valueOf(page + 1)) : null;
+        return ApiLinks.page(PageDTO.of(found.content(), PersonDTO::from, next));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<PageDTO<PersonDTO>> search(@RequestParam("q") String query,
+                                                     @RequestParam(value = "page", defaultValue = "0") int page,
+                                                     @RequestParam(value = "size", required = false) Integer size) {
+        SearchPage<PersonView> found = peopleService.search(query, page, size);
+        String next = found.hasNext() ? ApiLinks.withParam("page", String.valueOf(page + 1)) : null;
+        return ApiLinks.page(PageDTO.of(found.content(), PersonDTO::from, next));
+    }
+}
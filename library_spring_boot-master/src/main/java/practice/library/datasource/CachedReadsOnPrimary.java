@@ -0,0 +1,16 @@
+package practice.library.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+// Результат @Cacheable живёт в общем кэше дольше окна read-your-writes: строка с отстающей реплики
+// осталась бы там и после сброса, сделанного записью. Поэтому чтения, заполняющие кэш, идут на основную базу
+@Aspect
+public class CachedReadsOnPrimary {
+
+    @Around("@annotation(org.springframework.cache.annotation.Cacheable)")
+    public Object readFromPrimary(ProceedingJoinPoint call) throws Throwable {
+        return ReadWriteRoutingDataSource.readFromPrimary(call::proceed);
+    }
+}
@@ -0,0 +1,159 @@
+package practice.library.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Транзакции readOnly = true читают с реплик по кругу, всё остальное (записи, Flyway, запросы вне транзакции)
+// идёт на основную базу. Недоступная реплика выводится из ротации до следующей успешной проверки,
+// а если здоровых реплик нет, чтение уходит на основную базу.
+// Оборачивается в LazyConnectionDataSourceProxy: соединение берётся при первом запросе, когда признак
+// readOnly транзакции уже выставлен
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    public static final String PRIMARY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+    private final Map<String, DataSource> replicas;
+
+    private final Set<String> healthy = ConcurrentHashMap.newKeySet();
+
+    private final List<String> rotation;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final ReadYourWrites readYourWrites;
+
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    private final ScheduledExecutorService healthChecks;
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      ReadYourWrites readYourWrites, long healthCheckMillis) {
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.rotation = List.copyOf(this.replicas.keySet());
+        this.readYourWrites = readYourWrites;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.healthy.addAll(rotation);
+
+        Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecks.scheduleWithFixedDelay(this::checkReplicas, healthCheckMillis, healthCheckMillis,
+                TimeUnit.MILLISECONDS);
+        syncClock();
+    }
+
+    // Чтение внутри action идёт на основную базу, даже если транзакция readOnly
+    public static <T> T readFromPrimary(Read<T> action) throws Throwable {
+        if (primaryReads.get() != null)
+            return action.run();
+        primaryReads.set(Boolean.TRUE);
+        try {
+            return action.run();
+        } finally {
+            primaryReads.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || primaryReads.get() != null)
+            return PRIMARY;
+        if (readYourWrites.wroteRecently())
+            return PRIMARY;
+        return nextHealthyReplica();
+    }
+
+    // Сбой соединения с репликой не роняет чтение: реплика выводится из ротации, запрос идёт на основную базу
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                    && TransactionSynchronizationManager.isActualTransactionActive())
+                readYourWrites.markAfterCommit();
+            return getResolvedDefaultDataSource().getConnection();
+        }
+
+        try {
+            return replicas.get(key).getConnection();
+        } catch (SQLException e) {
+            markDown(key.toString(), e);
+            return getResolvedDefaultDataSource().getConnection();
+        }
+    }
+
+    public void checkReplicas() {
+        syncClock();
+        readYourWrites.evictExpired();
+        replicas.forEach((name, replica) -> {
+            try (Connection connection = replica.getConnection()) {
+                if (!connection.isValid(1))
+                    throw new SQLException("Соединение с репликой не прошло проверку");
+                if (healthy.add(name))
+                    log.info("Replica {} is back in rotation", name);
+            } catch (SQLException e) {
+                markDown(name, e);
+            }
+        });
+    }
+
+    public Set<String> healthyReplicas() {
+        return Set.copyOf(healthy);
+    }
+
+    @Override
+    public void close() {
+        healthChecks.shutdownNow();
+    }
+
+    private String nextHealthyReplica() {
+        for (int i = 0; i < rotation.size(); i++) {
+            String candidate = rotation.get(Math.floorMod(next.getAndIncrement(), rotation.size()));
+            if (healthy.contains(candidate))
+                return candidate;
+        }
+        return PRIMARY;
+    }
+
+    // Отметки «своих записей» сравниваются по часам основной базы; при её недоступности остаётся прежняя сверка
+    private void syncClock() {
+        try {
+            readYourWrites.syncClock(primaryJdbcTemplate);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the primary database clock: {}", e.getMessage());
+        }
+    }
+
+    private void markDown(String name, SQLException e) {
+        if (healthy.remove(name))
+            log.warn("Replica {} is out of rotation: {}", name, e.getMessage());
+    }
+    @FunctionalInterface
+    public interface Read<T> {
+
+        T run() throws Throwable;
+    }
+}
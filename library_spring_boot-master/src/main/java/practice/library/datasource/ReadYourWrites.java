@@ -0,0 +1,106 @@
+package practice.library.datasource;
+
+import jakarta.servlet.http.HttpSession;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import practice.library.cluster.DatabaseClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Помнит, кто недавно фиксировал запись: его чтения идут на основную базу, пока реплики могут отставать.
+// Отметка хранится в памяти узла по имени пользователя и в HTTP-сессии: сессии лежат в общей таблице
+// spring_session, так что следующий запрос пользователя видит отметку и на другом узле. Время отметки —
+// по часам базы (DatabaseClock), поэтому узлы сравнивают его без поправки на расхождение своих часов
+public class ReadYourWrites {
+
+    static final String SESSION_ATTRIBUTE = ReadYourWrites.class.getName() + ".WRITTEN_AT";
+
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private final long windowMillis;
+
+    private final DatabaseClock clock;
+
+    public ReadYourWrites(long windowMillis, DatabaseClock clock) {
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+    }
+
+    // Отметка ставится после фиксации, иначе откаченная запись зря уводила бы чтения с реплик.
+    // Синхронизация регистрируется один раз на транзакцию, сколько бы соединений она ни взяла
+    public void markAfterCommit() {
+        String username = currentUsername();
+        if (username == null || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this))
+            return;
+
+        TransactionSynchronizationManager.bindResource(this, username);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long now = clock.millis();
+                lastWrites.put(username, now);
+                HttpSession session = currentSession();
+                if (session != null)
+                    session.setAttribute(SESSION_ATTRIBUTE, now);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.this);
+            }
+        });
+    }
+
+    public boolean wroteRecently() {
+        String username = currentUsername();
+        if (username == null)
+            return false;
+
+        long now = clock.millis();
+        Long writtenAt = lastWrites.get(username);
+        if (writtenAt != null) {
+            if (now - writtenAt < windowMillis)
+                return true;
+            lastWrites.remove(username, writtenAt);
+        }
+        HttpSession session = currentSession();
+        return session != null && session.getAttribute(SESSION_ATTRIBUTE) instanceof Long sessionWrite
+                && now - sessionWrite < windowMillis;
+    }
+
+    public void evictExpired() {
+        long now = clock.millis();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt >= windowMillis);
+    }
+
+    public void syncClock(JdbcTemplate primary) {
+        clock.sync(primary);
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken)
+            return null;
+        return authentication.getName();
+    }
+
+    // Сессия не создаётся: без неё отметка остаётся только в памяти узла
+    private static HttpSession currentSession() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes))
+            return null;
+        try {
+            return attributes.getRequest().getSession(false);
+        } catch (IllegalStateException e) {
+            // Ответ уже отправлен или запрос завершён
+            return null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package practice.library.dto;
+
+import practice.library.models.AuditEvent;
+import practice.library.models.AuditEventType;
+
+import java.util.Date;
+
+public record AuditEventDTO(long id, Date occurredAt, AuditEventType type, Long bookId, Long personId,
+                            String actor, String details) {
+
+    public static AuditEventDTO from(AuditEvent event) {
+        return new AuditEventDTO(event.getId(), event.getOccurredAt(), event.getType(), event.getBookId(),
+                event.getPersonId(), event.getActor(), event.getDetails());
+    }
+}
@@ -0,0 +1,19 @@
+package practice.library.dto;
+
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+
+import java.util.Date;
+
+public record BookDTO(long id, String title, String author, int yearOfProd, Long ownerId, Date takenAt) {
+
+    public static BookDTO from(BookCardView book) {
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getYearOfProd(), book.getOwnerId(),
+                book.getTakenAt());
+    }
+
+    public static BookDTO from(BookView book) {
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getYearOfProd(), book.getOwnerId(),
+                book.getTakenAt());
+    }
+}
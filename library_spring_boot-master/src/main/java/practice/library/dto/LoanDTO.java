@@ -0,0 +1,14 @@
+package practice.library.dto;
+
+import practice.library.projections.LoanRecordView;
+
+import java.util.Date;
+
+public record LoanDTO(long bookId, String title, String author, long ownerId, String ownerName,
+                      Date takenAt, boolean overdue) {
+
+    public static LoanDTO from(LoanRecordView loan) {
+        return new LoanDTO(loan.getId(), loan.getTitle(), loan.getAuthor(), loan.getOwnerId(), loan.getOwnerName(),
+                loan.getTakenAt(), loan.isOverdue());
+    }
+}
@@ -0,0 +1,7 @@
+package practice.library.dto;
+
+import java.util.List;
+
+// Тело массовой выдачи и возврата; personId нужен только для выдачи
+public record LoanRequestDTO(Long personId, List<Long> bookIds) {
+}
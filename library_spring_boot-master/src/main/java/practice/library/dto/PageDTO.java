@@ -0,0 +1,12 @@
+package practice.library.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Страница ответа API со ссылкой на следующую страницу (null, если это последняя)
+public record PageDTO<T>(List<T> content, String next) {
+
+    public static <E, T> PageDTO<T> of(List<E> content, Function<E, T> mapper, String next) {
+        return new PageDTO<>(content.stream().map(mapper).toList(), next);
+    }
+}
@@ -0,0 +1,13 @@
+package practice.library.dto;
+
+import practice.library.projections.PersonView;
+
+import java.util.Date;
+
+// Без логина, пароля и роли
+public record PersonDTO(long id, String name, Date dateOfBirth) {
+
+    public static PersonDTO from(PersonView person) {
+        return new PersonDTO(person.getId(), person.getName(), person.getDateOfBirth());
+    }
+}
@@ -0,0 +1,27 @@
+package practice.library.migrations;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// Сдвигает book_seq за уже существующие id книг (с запасом на блок pooled-оптимизатора).
+// На Java, потому что restart with принимает только число, а setval есть не во всех базах
+public class V3__AlignBookSequence extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            long maxId;
+            try (ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) from Book")) {
+                resultSet.next();
+                maxId = resultSet.getLong(1);
+            }
+            if (maxId > 0)
+                statement.execute("alter sequence book_seq restart with " + (maxId + 1 + ALLOCATION_SIZE));
+        }
+    }
+}
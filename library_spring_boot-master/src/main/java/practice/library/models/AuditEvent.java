@@ -0,0 +1,82 @@
+package practice.library.models;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Date;
+
+// Запись журнала изменений; пишется пакетами через JDBC (AuditLog), через JPA только читается
+@Entity
+@Immutable
+@Table(name = "audit_event", indexes = {
+        @Index(name = "audit_event_book_id_idx", columnList = "book_id, id"),
+        @Index(name = "audit_event_person_id_idx", columnList = "person_id, id"),
+        @Index(name = "audit_event_occurred_at_idx", columnList = "occurred_at")
+})
+public class AuditEvent {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "occurred_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date occurredAt;
+
+    @Column(name = "type", length = 32)
+    @Enumerated(EnumType.STRING)
+    private AuditEventType type;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column(name = "person_id")
+    private Long personId;
+
+    @Column(name = "actor", length = 100)
+    private String actor;
+
+    @Column(name = "details", length = 1000)
+    private String details;
+
+    public AuditEvent() {
+    }
+
+    public AuditEvent(Date occurredAt, AuditEventType type, Long bookId, Long personId, String actor, String details) {
+        this.occurredAt = occurredAt;
+        this.type = type;
+        this.bookId = bookId;
+        this.personId = personId;
+        this.actor = actor;
+        this.details = details;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Date getOccurredAt() {
+        return occurredAt;
+    }
+
+    public AuditEventType getType() {
+        return type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Long getPersonId() {
+        return personId;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+}
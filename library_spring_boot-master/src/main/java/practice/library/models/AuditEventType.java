@@ -0,0 +1,9 @@
+package practice.library.models;
+
+public enum AuditEventType {
+    BOOK_CREATED,
+    BOOK_UPDATED,
+    BOOK_DELETED,
+    BOOK_TAKEN,
+    BOOK_FREED
+}
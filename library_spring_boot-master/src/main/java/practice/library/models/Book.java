@@ -10,12 +10,19 @@ import jakarta.validation.constraints.Size;
 import java.util.Date;
 
 @Entity
-@Table(name = "Book")
+@Table(name = "Book", indexes = {
+        @Index(name = "book_owner_taken_at_idx", columnList = "owner_id, taken_at"),
+        @Index(name = "book_taken_at_idx", columnList = "taken_at"),
+        @Index(name = "book_year_of_prod_id_idx", columnList = "year_of_prod, id"),
+        @Index(name = "book_title_idx", columnList = "title")
+})
 public class Book {
 
+    // Последовательность с шагом 50: id выдаются блоками без запроса к базе, и вставки идут пакетами
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "title")
@@ -44,10 +51,7 @@ public class Book {
     @Column(name = "updated_by")
     private String updatedBy;
 
-    @Transient
-    private boolean isOverdue;
-
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", referencedColumnName = "id")
     private Person owner;
 
@@ -116,14 +120,6 @@ public class Book {
         this.updatedBy = updatedBy;
     }
 
-    public boolean isOverdue() {
-        return isOverdue;
-    }
-
-    public void setOverdue(boolean overdue) {
-        isOverdue = overdue;
-    }
-
     public Person getOwner() {
         return owner;
     }
@@ -139,7 +135,6 @@ public class Book {
                 ", title='" + title + '\'' +
                 ", author='" + author + '\'' +
                 ", yearOfProd=" + yearOfProd +
-                ", isOverdue=" + isOverdue +
                 ", owner=" + owner +
                 '}';
     }
@@ -10,7 +10,10 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "Person")
+@Table(name = "Person", indexes = {
+        @Index(name = "person_username_uidx", columnList = "username", unique = true),
+        @Index(name = "person_date_of_birth_id_idx", columnList = "date_of_birth, id")
+})
 public class Person {
 
     @Id
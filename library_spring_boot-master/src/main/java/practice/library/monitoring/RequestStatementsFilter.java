@@ -0,0 +1,116 @@
+package practice.library.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+import practice.library.config.SqlMonitoringProperties;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Число SQL-запросов и время JDBC на один HTTP-запрос по маршрутам: рост на странице — признак N+1.
+// Превышение бюджета только отмечается метрикой и в логе: к этому моменту ответ обычно уже отправлен,
+// а исключение из finally подменило бы ошибку самого запроса
+public class RequestStatementsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+
+    public static final String JDBC_MILLIS_HEADER = "X-SQL-Time-Millis";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestStatementsFilter.class);
+
+    private final StatementCounter statementCounter;
+
+    private final MeterRegistry meterRegistry;
+
+    private final SqlMonitoringProperties properties;
+
+    public RequestStatementsFilter(StatementCounter statementCounter, MeterRegistry meterRegistry,
+                                   SqlMonitoringProperties properties) {
+        this.statementCounter = statementCounter;
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        statementCounter.reset();
+        try {
+            if (!properties.responseHeaders()) {
+                chain.doFilter(request, response);
+                return;
+            }
+            chain.doFilter(request, new StatementHeadersResponse(response));
+            // Ответ, который так и не сбрасывался в сеть, зафиксирует контейнер уже после фильтра
+            if (!response.isCommitted())
+                writeHeaders(response);
+        } finally {
+            record(request);
+        }
+    }
+
+    private void record(HttpServletRequest request) {
+        String route = Routes.of(request);
+        int statements = statementCounter.current();
+        long jdbcMillis = statementCounter.currentMillis();
+
+        DistributionSummary.builder("library.request.statements")
+                .description("SQL statements executed per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("route", route)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements);
+        Timer.builder("library.request.jdbc")
+                .description("Total JDBC time per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("route", route)
+                .register(meterRegistry)
+                .record(jdbcMillis, TimeUnit.MILLISECONDS);
+
+        int statementBudget = properties.statementBudget(route);
+        boolean overStatements = statementBudget > 0 && statements > statementBudget;
+        boolean overTime = properties.jdbcMillisBudget() > 0 && jdbcMillis > properties.jdbcMillisBudget();
+        if (!overStatements && !overTime)
+            return;
+
+        Counter.builder("library.request.budget.exceeded")
+                .description("HTTP requests over the SQL statement or JDBC time budget")
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+
+        String message = String.format("%s %s: %d SQL statements (budget %d), %d ms in JDBC (budget %d ms)",
+                request.getMethod(), route, statements, statementBudget, jdbcMillis, properties.jdbcMillisBudget());
+        log.warn("SQL budget exceeded: {}", message);
+    }
+
+    private void writeHeaders(HttpServletResponse response) {
+        response.setIntHeader(STATEMENTS_HEADER, statementCounter.current());
+        response.setHeader(JDBC_MILLIS_HEADER, Long.toString(statementCounter.currentMillis()));
+    }
+
+    // Заголовки выставляются в момент фиксации ответа, пока их ещё можно добавить;
+    // запросы, выполненные после этого (при отрисовке большого шаблона), в них не попадут
+    private class StatementHeadersResponse extends OnCommittedResponseWrapper {
+
+        StatementHeadersResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders((HttpServletResponse) getResponse());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package practice.library.monitoring;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+// Шаблон маршрута контроллера (/books/{id}), а не сам URL: так у метрик ограниченное число значений тега
+public final class Routes {
+
+    public static final String NONE = "none";
+
+    private Routes() {
+    }
+
+    public static String of(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? NONE : pattern.toString();
+    }
+
+    public static String current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet)
+            return of(servlet.getRequest());
+        return NONE;
+    }
+}
@@ -0,0 +1,9 @@
+package practice.library.monitoring;
+
+import java.time.Instant;
+import java.util.List;
+
+// Запрос из журнала медленных: parameters — значения первого набора параметров, batchSize — число наборов
+public record SlowQuery(Instant executedAt, String route, long millis, String sql, List<String> parameters,
+                        int batchSize) {
+}
@@ -0,0 +1,90 @@
+package practice.library.monitoring;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+// Кольцевой буфер последних запросов дольше порога: запись без блокировок, старые записи затираются новыми
+public class SlowQueryLog {
+
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    // Хеши паролей не показываем даже администратору
+    private static final Pattern PASSWORD_HASH = Pattern.compile("^(\\{\\w+})?\\$2[aby]?\\$.*");
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final long thresholdMillis;
+
+    public SlowQueryLog(int capacity, long thresholdMillis) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    public void offer(ExecutionInfo execution, List<QueryInfo> queries) {
+        if (execution.getElapsedTime() < thresholdMillis || queries.isEmpty() || entries.length() == 0)
+            return;
+
+        QueryInfo query = queries.get(0);
+        List<List<ParameterSetOperation>> parameters = query.getParametersList();
+        SlowQuery entry = new SlowQuery(Instant.now(), Routes.current(), execution.getElapsedTime(),
+                query.getQuery(), parameters.isEmpty() ? List.of() : render(parameters.get(0)),
+                execution.isBatch() ? execution.getBatchSize() : 1);
+
+        int slot = (int) (written.getAndIncrement() % entries.length());
+        entries.set(slot, entry);
+    }
+
+    // Самые медленные сначала
+    public List<SlowQuery> snapshot() {
+        List<SlowQuery> snapshot = new ArrayList<>(entries.length());
+        for (int i = 0; i < entries.length(); i++) {
+            SlowQuery entry = entries.get(i);
+            if (entry != null)
+                snapshot.add(entry);
+        }
+        snapshot.sort(Comparator.comparingLong(SlowQuery::millis).reversed()
+                .thenComparing(SlowQuery::executedAt, Comparator.reverseOrder()));
+        return snapshot;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++)
+            entries.set(i, null);
+    }
+
+    public long thresholdMillis() {
+        return thresholdMillis;
+    }
+
+    private static List<String> render(List<ParameterSetOperation> operations) {
+        List<ParameterSetOperation> sorted = new ArrayList<>(operations);
+        sorted.sort(Comparator.comparingInt(operation ->
+                operation.getArgs()[0] instanceof Integer index ? index : Integer.MAX_VALUE));
+
+        List<String> values = new ArrayList<>(sorted.size());
+        for (ParameterSetOperation operation : sorted) {
+            if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+                values.add("null");
+                continue;
+            }
+            String value = String.valueOf(operation.getArgs()[1]);
+            if (PASSWORD_HASH.matcher(value).matches())
+                value = "***";
+            else if (value.length() > MAX_PARAMETER_LENGTH)
+                value = value.substring(0, MAX_PARAMETER_LENGTH) + "…";
+            values.add(value);
+        }
+        return values;
+    }
+}
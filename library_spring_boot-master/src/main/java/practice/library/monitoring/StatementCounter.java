@@ -0,0 +1,46 @@
+package practice.library.monitoring;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+// Считает обращения к JDBC в текущем потоке и их суммарное время; пакет (batch) — одно обращение.
+// Счётчики сбрасываются в начале HTTP-запроса, запросы дольше порога попадают в журнал медленных
+public class StatementCounter implements QueryExecutionListener {
+
+    private final ThreadLocal<long[]> tally = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final SlowQueryLog slowQueryLog;
+
+    public StatementCounter(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        long[] current = tally.get();
+        current[0]++;
+        current[1] += execution.getElapsedTime();
+        slowQueryLog.offer(execution, queries);
+    }
+
+    public void reset() {
+        long[] current = tally.get();
+        current[0] = 0;
+        current[1] = 0;
+    }
+
+    public int current() {
+        return (int) tally.get()[0];
+    }
+
+    public long currentMillis() {
+        return tally.get()[1];
+    }
+}
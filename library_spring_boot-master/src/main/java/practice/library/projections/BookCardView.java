@@ -0,0 +1,21 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Карточка книги: из владельца только id и имя, чтобы в кэш не попадали сущности с ленивыми связями
+public interface BookCardView {
+
+    long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    int getYearOfProd();
+
+    Long getOwnerId();
+
+    String getOwnerName();
+
+    Date getTakenAt();
+}
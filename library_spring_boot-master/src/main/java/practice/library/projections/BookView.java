@@ -0,0 +1,19 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Только колонки, которые показывают списки книг: без данных владельца, кроме его id
+public interface BookView {
+
+    long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    int getYearOfProd();
+
+    Long getOwnerId();
+
+    Date getTakenAt();
+}
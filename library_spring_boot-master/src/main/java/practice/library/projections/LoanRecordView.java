@@ -0,0 +1,21 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Строка выгрузки всех выдач: книга, читатель и признак просрочки по OverduePolicy
+public interface LoanRecordView {
+
+    long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    Date getTakenAt();
+
+    long getOwnerId();
+
+    String getOwnerName();
+
+    boolean isOverdue();
+}
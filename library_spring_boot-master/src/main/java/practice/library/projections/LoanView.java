@@ -0,0 +1,19 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Книга на руках у читателя; просрочка вычисляется в запросе по OverduePolicy
+public interface LoanView {
+
+    long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    int getYearOfProd();
+
+    Date getTakenAt();
+
+    boolean isOverdue();
+}
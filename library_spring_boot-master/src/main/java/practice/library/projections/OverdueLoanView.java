@@ -0,0 +1,19 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Строка отчёта о просроченных книгах
+public interface OverdueLoanView {
+
+    long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    Date getTakenAt();
+
+    long getOwnerId();
+
+    String getOwnerName();
+}
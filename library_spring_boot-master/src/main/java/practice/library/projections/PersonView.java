@@ -0,0 +1,13 @@
+package practice.library.projections;
+
+import java.util.Date;
+
+// Только колонки, которые показывают списки людей: без логина, пароля и роли
+public interface PersonView {
+
+    long getId();
+
+    String getName();
+
+    Date getDateOfBirth();
+}
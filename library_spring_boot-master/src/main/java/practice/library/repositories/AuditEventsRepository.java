@@ -0,0 +1,21 @@
+package practice.library.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import practice.library.models.AuditEvent;
+
+import java.util.List;
+
+// Постраничный вывод журнала от новых событий к старым по курсору id
+@Repository
+public interface AuditEventsRepository extends JpaRepository<AuditEvent, Long> {
+
+    List<AuditEvent> findByBookIdOrderByIdDesc (long bookId, Pageable pageable);
+
+    List<AuditEvent> findByBookIdAndIdLessThanOrderByIdDesc (long bookId, long id, Pageable pageable);
+
+    List<AuditEvent> findByPersonIdOrderByIdDesc (long personId, Pageable pageable);
+
+    List<AuditEvent> findByPersonIdAndIdLessThanOrderByIdDesc (long personId, long id, Pageable pageable);
+}
@@ -1,13 +1,142 @@
 package practice.library.repositories;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.domain.Pageable;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+import practice.library.projections.LoanRecordView;
+import practice.library.projections.LoanView;
+import practice.library.projections.OverdueLoanView;
+import practice.library.search.BookState;
+import practice.library.search.SearchDocument;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BooksRepository extends JpaRepository<Book, Long> {
 
-    List<Book> findBookByTitleContainingIgnoreCase (String contain);
+    // Книга вместе с владельцем одним запросом
+    @EntityGraph(attributePaths = "owner")
+    Optional<Book> findWithOwnerById (long id);
+
+    @Query("select b.id as id, b.title as title, b.author as author, b.yearOfProd as yearOfProd, " +
+            "o.id as ownerId, o.name as ownerName, b.takenAt as takenAt from Book b left join b.owner o " +
+            "where b.id = :id")
+    Optional<BookCardView> findCardById (@Param("id") long id);
+
+    // Проекции для списков выбирают только нужные колонки и не попадают в контекст персистентности
+    String VIEW = "select b.id as id, b.title as title, b.author as author, b.yearOfProd as yearOfProd, " +
+            "b.owner.id as ownerId, b.takenAt as takenAt from Book b";
+
+    // Список вместо Page: страницам по номеру не нужен отдельный запрос count
+    @Query(VIEW)
+    List<BookView> findViews (Pageable pageable);
+
+    @Query(VIEW + " where b.id in :ids")
+    List<BookView> findViewsByIdIn (@Param("ids") Collection<Long> ids);
+
+    @Query(VIEW + " order by b.yearOfProd, b.id")
+    List<BookView> findFirstPage (Pageable pageable);
+
+    @Query(VIEW + " where b.yearOfProd > :year or (b.yearOfProd = :year and b.id > :id) " +
+            "order by b.yearOfProd, b.id")
+    List<BookView> findPageAfter (@Param("year") int year, @Param("id") long id, Pageable pageable);
+
+    @Query("select new practice.library.search.SearchDocument(b.id, concat(b.title, ' ', b.author)) from Book b")
+    List<SearchDocument> findSearchDocuments ();
+
+    @Query("select new practice.library.search.SearchDocument(b.id, concat(b.title, ' ', b.author)) from Book b " +
+            "where b.id in :ids")
+    List<SearchDocument> findSearchDocumentsByIdIn (@Param("ids") Collection<Long> ids);
+
+    @Query("select b.id as id, b.title as title, b.author as author, b.yearOfProd as yearOfProd, " +
+            "b.takenAt as takenAt, case when b.takenAt <= :overdueSince then true else false end as overdue " +
+            "from Book b where b.owner.id = :ownerId order by b.takenAt")
+    List<LoanView> findLoans (@Param("ownerId") long ownerId,
+                              @Param("overdueSince") @Temporal(TemporalType.TIMESTAMP) Date overdueSince);
+
+    String OVERDUE = "select b.id as id, b.title as title, b.author as author, b.takenAt as takenAt, " +
+            "o.id as ownerId, o.name as ownerName from Book b join b.owner o where b.takenAt <= :overdueSince";
+
+    @Query(OVERDUE + " order by b.takenAt, b.id")
+    List<OverdueLoanView> findOverdueFirstPage (@Param("overdueSince") @Temporal(TemporalType.TIMESTAMP)
+                                                Date overdueSince, Pageable pageable);
+
+    @Query(OVERDUE + " and (b.takenAt > :takenAt or (b.takenAt = :takenAt and b.id > :id)) order by b.takenAt, b.id")
+    List<OverdueLoanView> findOverduePageAfter (@Param("overdueSince") @Temporal(TemporalType.TIMESTAMP)
+                                                Date overdueSince,
+                                                @Param("takenAt") @Temporal(TemporalType.TIMESTAMP) Date takenAt,
+                                                @Param("id") long id, Pageable pageable);
+
+    // Выдача и возврат одним условным UPDATE: из параллельных запросов строку изменит только один
+    @Modifying
+    @Query("update Book b set b.owner = :owner, b.takenAt = :takenAt where b.id = :id and b.owner is null")
+    int takeIfFree (@Param("id") long id, @Param("owner") Person owner,
+                    @Param("takenAt") @Temporal(TemporalType.TIMESTAMP) Date takenAt);
+
+    // Возврат условен на конкретного владельца, чтобы журнал записал того, кто книгу действительно вернул
+    @Modifying
+    @Query("update Book b set b.owner = null, b.takenAt = null where b.id = :id and b.owner.id = :ownerId")
+    int freeIfTakenBy (@Param("id") long id, @Param("ownerId") long ownerId);
+
+    // Правка описания пишет только свои колонки: выдачу или возврат, зафиксированные после загрузки формы,
+    // она не перезапишет, а параллельный UPDATE той же строки дождётся её блокировки
+    @Modifying
+    @Query("update Book b set b.title = :title, b.author = :author, b.yearOfProd = :yearOfProd, " +
+            "b.updatedAt = :updatedAt, b.updatedBy = :updatedBy where b.id = :id")
+    int updateDescription (@Param("id") long id, @Param("title") String title, @Param("author") String author,
+                           @Param("yearOfProd") int yearOfProd,
+                           @Param("updatedAt") @Temporal(TemporalType.TIMESTAMP) Date updatedAt,
+                           @Param("updatedBy") String updatedBy);
+
+    @Query("select b.owner.id from Book b where b.id = :id")
+    Optional<Long> findOwnerId (@Param("id") long id);
+
+    // Блокировка строк в порядке id, чтобы встречные массовые выдачи не попадали в deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.id in :ids order by b.id")
+    List<Book> findForUpdateByIdIn (@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.owner.id = :ownerId order by b.id")
+    List<Book> findForUpdateByOwnerId (@Param("ownerId") long ownerId);
+
+    // Выгрузка читает строки курсором по EXPORT_FETCH_SIZE, а не всю таблицу в память; поток закрывать обязательно
+    String EXPORT_FETCH_SIZE = "1000";
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(VIEW + " order by b.id")
+    Stream<BookView> streamViews ();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("select new practice.library.search.BookState(b.id, b.owner.id) from Book b")
+    Stream<BookState> streamStates ();
+
+    @Query("select new practice.library.search.BookState(b.id, b.owner.id) from Book b where b.id in :ids")
+    List<BookState> findStatesByIdIn (@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("select b.id as id, b.title as title, b.author as author, b.takenAt as takenAt, " +
+            "o.id as ownerId, o.name as ownerName, " +
+            "case when b.takenAt <= :overdueSince then true else false end as overdue " +
+            "from Book b join b.owner o order by o.id, b.takenAt, b.id")
+    Stream<LoanRecordView> streamLoans (@Param("overdueSince") @Temporal(TemporalType.TIMESTAMP) Date overdueSince);
 }
@@ -1,16 +1,73 @@
 package practice.library.repositories;
 
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.TemporalType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import practice.library.models.Person;
+import practice.library.projections.PersonView;
+import practice.library.search.SearchDocument;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PeopleRepository extends JpaRepository<Person, Long> {
 
-    List<Person> findPersonByNameContainingIgnoreCase (String contain);
-
     Optional<Person> findPersonByUsername (String username);
+
+    // Проекции для списков выбирают только нужные колонки и не попадают в контекст персистентности
+    String VIEW = "select p.id as id, p.name as name, p.dateOfBirth as dateOfBirth from Person p";
+
+    @Query(VIEW)
+    List<PersonView> findViews (Pageable pageable);
+
+    @Query(VIEW + " where p.id = :id")
+    Optional<PersonView> findViewById (@Param("id") long id);
+
+    @Query(VIEW + " where p.id in :ids")
+    List<PersonView> findViewsByIdIn (@Param("ids") Collection<Long> ids);
+
+    @Query(VIEW + " order by p.dateOfBirth asc nulls last, p.id")
+    List<PersonView> findFirstPage (Pageable pageable);
+
+    // Люди без даты рождения идут в конце списка
+    @Query(VIEW + " where p.dateOfBirth > :date or (p.dateOfBirth = :date and p.id > :id) " +
+            "or p.dateOfBirth is null order by p.dateOfBirth asc nulls last, p.id")
+    List<PersonView> findPageAfter (@Param("date") @Temporal(TemporalType.DATE) Date date,
+                                    @Param("id") long id, Pageable pageable);
+
+    @Query(VIEW + " where p.dateOfBirth is null and p.id > :id order by p.id")
+    List<PersonView> findUndatedPageAfter (@Param("id") long id, Pageable pageable);
+
+    @Query("select new practice.library.search.SearchDocument(p.id, p.name) from Person p")
+    List<SearchDocument> findSearchDocuments ();
+
+    @Query("select new practice.library.search.SearchDocument(p.id, p.name) from Person p where p.id in :ids")
+    List<SearchDocument> findSearchDocumentsByIdIn (@Param("ids") Collection<Long> ids);
+
+    @Query("select new practice.library.search.SearchDocument(p.id, concat(p.name, ' ', p.username)) from Person p")
+    List<SearchDocument> findPrefixDocuments ();
+
+    @Query("select new practice.library.search.SearchDocument(p.id, concat(p.name, ' ', p.username)) from Person p " +
+            "where p.id in :ids")
+    List<SearchDocument> findPrefixDocumentsByIdIn (@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BooksRepository.EXPORT_FETCH_SIZE))
+    @Query(VIEW + " order by p.id")
+    Stream<PersonView> streamViews ();
+
+    @Modifying
+    @Query("update Person p set p.password = :password where p.id = :id")
+    int updatePassword (@Param("id") long id, @Param("password") String password);
 }
@@ -0,0 +1,323 @@
+package practice.library.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.models.Book;
+import practice.library.repositories.BooksRepository;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Доступность каталога в памяти: сжатые битовые карты свободных и выданных книг по id и число книг
+// на руках у каждого читателя. Строится при старте потоком по таблице Book, дальше меняется после
+// фиксации выдач, возвратов и правок каталога, по журналу изменений других узлов (ChangeFeed)
+// и периодически сверяется с базой
+@Component
+public class AvailabilityIndex implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityIndex.class);
+
+    private final BooksRepository booksRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long reconcileMillis;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object reconcileLock = new Object();
+
+    private final ScheduledExecutorService reconciler;
+
+    private State state = new State();
+
+    // Изменения, пришедшие во время сверки: после чтения базы они накатываются на новое состояние
+    private List<Consumer<State>> journal;
+
+    private boolean loaded;
+
+    private volatile Counter drift;
+
+    @Autowired
+    public AvailabilityIndex(BooksRepository booksRepository, TransactionTemplate transactionTemplate,
+                             @Value("${library.availability.reconcile-millis}") long reconcileMillis) {
+        this.booksRepository = booksRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileMillis = reconcileMillis;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "availability-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        reconcile();
+        if (reconcileMillis > 0)
+            reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileMillis, reconcileMillis,
+                    TimeUnit.MILLISECONDS);
+    }
+
+    // ownerId == null — книга свободна
+    public void put(long bookId, Long ownerId) {
+        change(state -> state.put(bookId, ownerId));
+    }
+
+    public void remove(long bookId) {
+        change(state -> state.remove(bookId));
+    }
+
+    // Все книги читателя становятся свободными: PeopleService.delete освобождает их в базе по одной,
+    // с записью возврата в журнал, а индекс после фиксации отпускает их одним изменением
+    public void release(long ownerId) {
+        change(state -> state.release(ownerId));
+    }
+
+    public void putAfterCommit(long bookId, Long ownerId) {
+        SearchIndex.afterCommit(() -> put(bookId, ownerId));
+    }
+
+    public void removeAfterCommit(long bookId) {
+        SearchIndex.afterCommit(() -> remove(bookId));
+    }
+
+    public void releaseAfterCommit(long ownerId) {
+        SearchIndex.afterCommit(() -> release(ownerId));
+    }
+
+    // Читает таблицу заново и подменяет состояние; возвращает число книг, расходившихся с базой
+    public long reconcile() {
+        synchronized (reconcileLock) {
+            lock.writeLock().lock();
+            try {
+                journal = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            State fresh = new State();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<BookState> books = booksRepository.streamStates()) {
+                        books.forEach(book -> fresh.put(book.id(), book.ownerId()));
+                    }
+                });
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    journal = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            fresh.optimize();
+
+            long differences;
+            lock.writeLock().lock();
+            try {
+                journal.forEach(change -> change.accept(fresh));
+                journal = null;
+                differences = loaded ? state.differences(fresh) : 0;
+                state = fresh;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (differences > 0) {
+                log.warn("Availability index was out of sync with the database for {} books", differences);
+                if (drift != null)
+                    drift.increment(differences);
+            }
+            return differences;
+        }
+    }
+
+    // Свободные книги с id больше afterId по возрастанию id
+    public List<Long> available(long afterId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            PeekableLongIterator iterator = state.available.getLongIteratorFrom(afterId + 1);
+            while (ids.size() < limit && iterator.hasNext())
+                ids.add(iterator.next());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    public boolean isAvailable(long bookId) {
+        lock.readLock().lock();
+        try {
+            return state.available.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long availableCount() {
+        lock.readLock().lock();
+        try {
+            return state.available.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long onLoanCount() {
+        lock.readLock().lock();
+        try {
+            return state.onLoan.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Число книг на руках у каждого из читателей; у кого книг нет, в ответе отсутствуют
+    public Map<Long, Integer> loans(Collection<Long> ownerIds) {
+        Map<Long, Integer> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Long ownerId : ownerIds) {
+                Integer count = state.loans.get(ownerId);
+                if (count != null)
+                    counts.put(ownerId, count);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    public int loans(long ownerId) {
+        lock.readLock().lock();
+        try {
+            return state.loans.getOrDefault(ownerId, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static Long ownerId(Book book) {
+        return book.getOwner() == null ? null : book.getOwner().getId();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.availability.books", this, AvailabilityIndex::availableCount)
+                .tag("state", "available")
+                .description("Books in the availability index")
+                .register(registry);
+        Gauge.builder("library.availability.books", this, AvailabilityIndex::onLoanCount)
+                .tag("state", "on_loan")
+                .description("Books in the availability index")
+                .register(registry);
+        drift = Counter.builder("library.availability.drift")
+                .description("Books found out of sync with the database during reconciliation")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        reconciler.shutdownNow();
+    }
+
+    private void change(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (journal != null)
+                journal.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (DataAccessException e) {
+            log.error("Availability index reconciliation failed", e);
+        }
+    }
+
+    // Изменения задают итоговое состояние книги, а не приращение, поэтому их можно накатывать повторно
+    private static final class State {
+
+        private final Roaring64Bitmap available = new Roaring64Bitmap();
+
+        private final Roaring64Bitmap onLoan = new Roaring64Bitmap();
+
+        private final Map<Long, Long> owners = new HashMap<>();
+
+        private final Map<Long, Integer> loans = new HashMap<>();
+
+        void put(long bookId, Long ownerId) {
+            remove(bookId);
+            if (ownerId == null) {
+                available.addLong(bookId);
+                return;
+            }
+            onLoan.addLong(bookId);
+            owners.put(bookId, ownerId);
+            loans.merge(ownerId, 1, Integer::sum);
+        }
+
+        void remove(long bookId) {
+            available.removeLong(bookId);
+            onLoan.removeLong(bookId);
+            Long ownerId = owners.remove(bookId);
+            if (ownerId != null)
+                loans.computeIfPresent(ownerId, (id, count) -> count == 1 ? null : count - 1);
+        }
+
+        void release(long ownerId) {
+            if (!loans.containsKey(ownerId))
+                return;
+            List<Long> books = new ArrayList<>();
+            owners.forEach((bookId, owner) -> {
+                if (owner == ownerId)
+                    books.add(bookId);
+            });
+            books.forEach(bookId -> put(bookId, null));
+        }
+
+        void optimize() {
+            available.runOptimize();
+            onLoan.runOptimize();
+        }
+
+        long differences(State other) {
+            Roaring64Bitmap differing = Roaring64Bitmap.xor(available, other.available);
+            differing.or(Roaring64Bitmap.xor(onLoan, other.onLoan));
+            for (Map.Entry<Long, Long> loan : owners.entrySet()) {
+                Long otherOwner = other.owners.get(loan.getKey());
+                if (otherOwner != null && !otherOwner.equals(loan.getValue()))
+                    differing.addLong(loan.getKey());
+            }
+            return differing.getLongCardinality();
+        }
+    }
+}
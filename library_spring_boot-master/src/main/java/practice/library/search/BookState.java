@@ -0,0 +1,5 @@
+package practice.library.search;
+
+// Книга и её читатель (null, если книга свободна) — всё, что нужно индексу доступности
+public record BookState(long id, Long ownerId) {
+}
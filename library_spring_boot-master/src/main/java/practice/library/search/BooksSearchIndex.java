@@ -0,0 +1,32 @@
+package practice.library.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import practice.library.models.Book;
+import practice.library.repositories.BooksRepository;
+
+@Component
+public class BooksSearchIndex extends SearchIndex {
+
+    private final BooksRepository booksRepository;
+
+    @Autowired
+    public BooksSearchIndex(BooksRepository booksRepository,
+                            @Value("${library.search.min-similarity}") double minSimilarity,
+                            @Value("${library.search.max-candidates}") int maxCandidates) {
+        super(minSimilarity, maxCandidates);
+        this.booksRepository = booksRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuild(booksRepository::findSearchDocuments);
+    }
+
+    public static SearchDocument document(Book book) {
+        return new SearchDocument(book.getId(), book.getTitle() + " " + book.getAuthor());
+    }
+}
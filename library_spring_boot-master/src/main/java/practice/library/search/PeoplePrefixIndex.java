@@ -0,0 +1,29 @@
+package practice.library.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+
+// Подсказки при выборе читателя: по началу слов имени и по началу логина
+@Component
+public class PeoplePrefixIndex extends PrefixIndex {
+
+    private final PeopleRepository peopleRepository;
+
+    @Autowired
+    public PeoplePrefixIndex(PeopleRepository peopleRepository) {
+        this.peopleRepository = peopleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuild(peopleRepository::findPrefixDocuments);
+    }
+
+    public static SearchDocument document(Person person) {
+        return new SearchDocument(person.getId(), person.getName() + " " + person.getUsername());
+    }
+}
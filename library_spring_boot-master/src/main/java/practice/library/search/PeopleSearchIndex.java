@@ -0,0 +1,32 @@
+package practice.library.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+
+@Component
+public class PeopleSearchIndex extends SearchIndex {
+
+    private final PeopleRepository peopleRepository;
+
+    @Autowired
+    public PeopleSearchIndex(PeopleRepository peopleRepository,
+                             @Value("${library.search.min-similarity}") double minSimilarity,
+                             @Value("${library.search.max-candidates}") int maxCandidates) {
+        super(minSimilarity, maxCandidates);
+        this.peopleRepository = peopleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuild(peopleRepository::findSearchDocuments);
+    }
+
+    public static SearchDocument document(Person person) {
+        return new SearchDocument(person.getId(), person.getName());
+    }
+}
@@ -0,0 +1,192 @@
+package practice.library.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Упорядоченный словарь слов документа для подсказок при вводе: каждое слово запроса должно быть
+// началом какого-то слова документа. Порядок выдачи — по совпавшему слову, затем по id
+public abstract class PrefixIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object rebuildLock = new Object();
+
+    private Words current = new Words();
+
+    // Изменения, пришедшие во время перестройки: накатываются на новый индекс перед подменой
+    private List<Consumer<Words>> journal;
+
+    public void put(SearchDocument document) {
+        long id = document.id();
+        Set<String> documentWords = new HashSet<>(words(document.text()));
+        change(words -> words.put(id, documentWords));
+    }
+
+    public void remove(long id) {
+        change(words -> words.remove(id));
+    }
+
+    public void rebuild(Collection<SearchDocument> all) {
+        rebuild(() -> all);
+    }
+
+    // Как и в SearchIndex, новый словарь строится рядом со старым и подменяет его целиком
+    public void rebuild(Supplier<Collection<SearchDocument>> all) {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                journal = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Words fresh = new Words();
+            try {
+                for (SearchDocument document : all.get())
+                    fresh.put(document.id(), new HashSet<>(words(document.text())));
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    journal = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                journal.forEach(change -> change.accept(fresh));
+                journal = null;
+                current = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void putAfterCommit(SearchDocument document) {
+        SearchIndex.afterCommit(() -> put(document));
+    }
+
+    public void removeAfterCommit(long id) {
+        SearchIndex.afterCommit(() -> remove(id));
+    }
+
+    public List<Long> search(String query, int page, int size) {
+        SearchIndex.checkPage(page);
+        return find(query, (long) page * size, size);
+    }
+
+    // Страница с одним лишним идентификатором: по нему видно, есть ли следующая страница
+    public List<Long> searchWithNext(String query, int page, int size) {
+        SearchIndex.checkPage(page);
+        return find(query, (long) page * size, size + 1);
+    }
+
+    // Перебор останавливается, как только набрана запрошенная страница
+    private List<Long> find(String query, long skip, int limit) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty())
+            return Collections.emptyList();
+
+        // Самое длинное слово запроса даёт самый узкий диапазон словаря
+        String longest = Collections.max(queryWords, Comparator.comparingInt(String::length));
+        Set<Long> found = new LinkedHashSet<>();
+
+        lock.readLock().lock();
+        try {
+            Words words = current;
+            for (NavigableSet<Long> ids : words.words.subMap(longest, true, longest + Character.MAX_VALUE, false).values()) {
+                for (Long id : ids) {
+                    if (found.contains(id) || !matchesAll(words.documents.get(id), queryWords))
+                        continue;
+                    found.add(id);
+                    if (found.size() >= skip + limit)
+                        return found.stream().skip(skip).toList();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found.stream().skip(skip).toList();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Words> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(current);
+            if (journal != null)
+                journal.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean matchesAll(Set<String> documentWords, List<String> queryWords) {
+        for (String prefix : queryWords) {
+            boolean matched = false;
+            for (String word : documentWords) {
+                if (word.startsWith(prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched)
+                return false;
+        }
+        return true;
+    }
+
+    static List<String> words(String text) {
+        if (text == null)
+            return Collections.emptyList();
+
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty())
+                words.add(word);
+        }
+        return words;
+    }
+
+    // Изменения задают итоговое состояние документа, поэтому их можно накатывать повторно
+    private static final class Words {
+
+        private final NavigableMap<String, NavigableSet<Long>> words = new TreeMap<>();
+
+        private final Map<Long, Set<String>> documents = new HashMap<>();
+
+        void put(long id, Set<String> documentWords) {
+            remove(id);
+            documents.put(id, documentWords);
+            for (String word : documentWords)
+                words.computeIfAbsent(word, w -> new TreeSet<>()).add(id);
+        }
+
+        void remove(long id) {
+            Set<String> documentWords = documents.remove(id);
+            if (documentWords == null)
+                return;
+
+            for (String word : documentWords) {
+                Set<Long> ids = words.get(word);
+                ids.remove(id);
+                if (ids.isEmpty())
+                    words.remove(word);
+            }
+        }
+    }
+}
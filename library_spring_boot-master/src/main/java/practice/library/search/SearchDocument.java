@@ -0,0 +1,5 @@
+package practice.library.search;
+
+// Текст сущности, по которому строится поисковый индекс
+public record SearchDocument(long id, String text) {
+}
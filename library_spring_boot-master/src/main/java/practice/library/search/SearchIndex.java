@@ -0,0 +1,315 @@
+package practice.library.search;
+
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Инвертированный индекс по триграммам слов (как pg_trgm): находит слова по префиксу и с опечатками,
+// результаты ранжируются по доле совпавших триграмм запроса
+public abstract class SearchIndex {
+
+    // Худший из отобранных результатов — в голове кучи: меньше совпадений, при равенстве больший id
+    private static final Comparator<Match> WORST_FIRST = Comparator.comparingInt(Match::score)
+            .thenComparing(Comparator.comparingLong(Match::id).reversed());
+
+    private static final Roaring64Bitmap EMPTY = new Roaring64Bitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object rebuildLock = new Object();
+
+    private final double minSimilarity;
+
+    private final int maxCandidates;
+
+    private Postings current = new Postings();
+
+    // Изменения, пришедшие во время перестройки: накатываются на новый индекс перед подменой
+    private List<Consumer<Postings>> journal;
+
+    protected SearchIndex(double minSimilarity) {
+        this(minSimilarity, Integer.MAX_VALUE);
+    }
+
+    protected SearchIndex(double minSimilarity, int maxCandidates) {
+        this.minSimilarity = minSimilarity;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public void put(SearchDocument document) {
+        long id = document.id();
+        String text = document.text();
+        Set<String> trigrams = trigrams(text);
+        change(postings -> postings.put(id, text, trigrams));
+    }
+
+    public void remove(long id) {
+        change(postings -> postings.remove(id));
+    }
+
+    public void rebuild(Collection<SearchDocument> all) {
+        rebuild(() -> all);
+    }
+
+    // Новый индекс строится рядом со старым и подменяет его целиком: поиск не видит пустого или неполного индекса
+    public void rebuild(Supplier<Collection<SearchDocument>> all) {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                journal = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Postings fresh = new Postings();
+            try {
+                for (SearchDocument document : all.get())
+                    fresh.put(document.id(), document.text(), trigrams(document.text()));
+                fresh.optimize();
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    journal = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                journal.forEach(change -> change.accept(fresh));
+                journal = null;
+                current = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Изменения попадают в индекс только после фиксации транзакции
+    public void putAfterCommit(SearchDocument document) {
+        afterCommit(() -> put(document));
+    }
+
+    public void removeAfterCommit(long id) {
+        afterCommit(() -> remove(id));
+    }
+
+    // Идентификаторы найденных документов в порядке убывания релевантности
+    public List<Long> search(String query, int page, int size) {
+        checkPage(page);
+        return find(query, (long) page * size, size);
+    }
+
+    // Страница с одним лишним идентификатором: по нему видно, есть ли следующая страница
+    public List<Long> searchWithNext(String query, int page, int size) {
+        checkPage(page);
+        return find(query, (long) page * size, size + 1);
+    }
+
+    // Документы перебираются по возрастанию id сразу по спискам всех триграмм запроса. Новый кандидат берётся
+    // только из (n - threshold + 1) самых коротких списков: документ с threshold совпадениями обязательно есть
+    // хотя бы в одном из них, по остальным спискам лишь сдвигаются указатели. Лучшие skip + limit держит
+    // ограниченная куча; при равном счёте выше меньший id, поэтому перебор заканчивается, как только худший
+    // из отобранных набрал не меньше, чем ещё может набрать любой следующий документ, или после maxCandidates
+    private List<Long> find(String query, long skip, int limit) {
+        Set<String> queryTrigrams = trigrams(query);
+        if (queryTrigrams.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        int threshold = Math.max(1, (int) Math.ceil(queryTrigrams.size() * minSimilarity));
+        int wanted = (int) Math.min(skip + limit, Integer.MAX_VALUE);
+        PriorityQueue<Match> top = new PriorityQueue<>(WORST_FIRST);
+
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> lists = new ArrayList<>(queryTrigrams.size());
+            for (String trigram : queryTrigrams)
+                lists.add(current.postings.getOrDefault(trigram, EMPTY));
+            lists.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+
+            int generating = lists.size() - threshold + 1;
+            PeekableLongIterator[] cursors = new PeekableLongIterator[lists.size()];
+            for (int i = 0; i < cursors.length; i++)
+                cursors[i] = lists.get(i).getLongIterator();
+
+            for (int candidates = 0; candidates < maxCandidates; candidates++) {
+                long id = Long.MAX_VALUE;
+                for (int i = 0; i < generating; i++) {
+                    if (cursors[i].hasNext())
+                        id = Math.min(id, cursors[i].peekNext());
+                }
+                if (id == Long.MAX_VALUE)
+                    break;
+
+                // Длинные списки проверяются, только если документ ещё может попасть в отобранные
+                int score = 0;
+                for (int i = 0; i < generating; i++) {
+                    if (cursors[i].hasNext() && cursors[i].peekNext() == id) {
+                        cursors[i].next();
+                        score++;
+                    }
+                }
+                int best = score + cursors.length - generating;
+                if (best >= threshold && (top.size() < wanted || best > top.peek().score())) {
+                    for (int i = generating; i < cursors.length; i++) {
+                        if (advanceTo(cursors[i], id))
+                            score++;
+                    }
+                    if (score >= threshold) {
+                        Match match = new Match(id, score);
+                        if (top.size() < wanted) {
+                            top.add(match);
+                        } else if (WORST_FIRST.compare(match, top.peek()) > 0) {
+                            top.poll();
+                            top.add(match);
+                        }
+                    }
+                }
+
+                int live = 0;
+                for (PeekableLongIterator cursor : cursors) {
+                    if (cursor.hasNext())
+                        live++;
+                }
+                if (live < threshold || top.size() == wanted && top.peek().score() >= live)
+                    break;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (top.size() <= skip)
+            return Collections.emptyList();
+        Long[] ranked = new Long[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--)
+            ranked[i] = top.poll().id();
+        return List.of(ranked).subList((int) skip, ranked.length);
+    }
+
+    // Сдвигает указатель к id и забирает его, если документ есть в списке
+    private static boolean advanceTo(PeekableLongIterator cursor, long id) {
+        if (cursor.hasNext() && cursor.peekNext() < id)
+            cursor.advanceIfNeeded(id);
+        if (!cursor.hasNext() || cursor.peekNext() != id)
+            return false;
+        cursor.next();
+        return true;
+    }
+
+    // Расставляет загруженные из базы сущности в порядке релевантности
+    public static <T> List<T> inRankOrder(List<Long> ids, List<T> found, ToLongFunction<T> id) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T entity : found)
+            byId.put(id.applyAsLong(entity), entity);
+
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long rankedId : ids) {
+            T entity = byId.get(rankedId);
+            if (entity != null)
+                ordered.add(entity);
+        }
+        return ordered;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Postings> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(current);
+            if (journal != null)
+                journal.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Номер страницы проверяют сервисы (ответ 400); сюда отрицательный номер может попасть только по ошибке вызова
+    static void checkPage(int page) {
+        if (page < 0)
+            throw new IllegalArgumentException("page must not be negative: " + page);
+    }
+
+    // Действие выполняется после фиксации текущей транзакции, а без транзакции — сразу
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        if (text == null)
+            return trigrams;
+
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++)
+                trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private record Match(long id, int score) {
+    }
+
+    // Изменения задают итоговое состояние документа, поэтому их можно накатывать повторно. Списки документов
+    // по триграммам — сжатые битовые карты, они отдают id по возрастанию
+    private static final class Postings {
+
+        private final Map<String, Roaring64Bitmap> postings = new HashMap<>();
+
+        // Текст документа, а не его триграммы: при удалении они считаются заново, а память на документ меньше
+        private final Map<Long, String> documents = new HashMap<>();
+
+        void put(long id, String text, Set<String> trigrams) {
+            remove(id);
+            documents.put(id, text);
+            for (String trigram : trigrams)
+                postings.computeIfAbsent(trigram, t -> new Roaring64Bitmap()).addLong(id);
+        }
+
+        void remove(long id) {
+            String text = documents.remove(id);
+            if (text == null)
+                return;
+
+            for (String trigram : trigrams(text)) {
+                Roaring64Bitmap ids = postings.get(trigram);
+                ids.removeLong(id);
+                if (ids.isEmpty())
+                    postings.remove(trigram);
+            }
+        }
+
+        void optimize() {
+            postings.values().forEach(Roaring64Bitmap::runOptimize);
+        }
+    }
+}
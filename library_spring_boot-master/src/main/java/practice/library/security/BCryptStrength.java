@@ -0,0 +1,29 @@
+package practice.library.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// Подбирает стоимость BCrypt под целевое время хеширования на текущем железе
+public final class BCryptStrength {
+
+    private static final int SAMPLES = 3;
+
+    private BCryptStrength() {
+    }
+
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minStrength);
+        encoder.encode("warm-up");
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        // Каждая единица стоимости удваивает время хеширования
+        double millis = Math.max(best / 1_000_000.0, 0.001);
+        int strength = minStrength + (int) Math.floor(Math.log(targetMillis / millis) / Math.log(2));
+        return Math.max(minStrength, Math.min(maxStrength, strength));
+    }
+}
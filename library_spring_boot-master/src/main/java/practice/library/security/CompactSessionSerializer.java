@@ -0,0 +1,105 @@
+package practice.library.security;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+
+import java.io.*;
+
+// Атрибуты сессии для внешнего хранилища. Контекст безопасности пишется как id, логин и роль
+// (без хеша пароля и WebAuthenticationDetails), CSRF-токен — как три строки; остальное —
+// обычной Java-сериализацией. Первый байт записи — её формат
+public class CompactSessionSerializer implements MeterBinder {
+
+    private static final byte JAVA = 0;
+
+    private static final byte SECURITY_CONTEXT = 1;
+
+    private static final byte CSRF_TOKEN = 2;
+
+    private final SerializingConverter serializer = new SerializingConverter();
+
+    private final DeserializingConverter deserializer;
+
+    private volatile DistributionSummary securityContexts;
+
+    private volatile DistributionSummary csrfTokens;
+
+    private volatile DistributionSummary others;
+
+    public CompactSessionSerializer(ClassLoader classLoader) {
+        this.deserializer = new DeserializingConverter(classLoader);
+    }
+
+    public byte[] serialize(Object attribute) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (attribute instanceof SecurityContext context
+                    && context.getAuthentication() instanceof UsernamePasswordAuthenticationToken authentication
+                    && authentication.isAuthenticated()
+                    && authentication.getPrincipal() instanceof PersonDetails person) {
+                out.writeByte(SECURITY_CONTEXT);
+                out.writeLong(person.getId());
+                out.writeUTF(person.getUsername());
+                out.writeUTF(person.getRole());
+                return record(securityContexts, bytes);
+            }
+            if (attribute instanceof DefaultCsrfToken token) {
+                out.writeByte(CSRF_TOKEN);
+                out.writeUTF(token.getHeaderName());
+                out.writeUTF(token.getParameterName());
+                out.writeUTF(token.getToken());
+                return record(csrfTokens, bytes);
+            }
+            out.writeByte(JAVA);
+            out.write(serializer.convert(attribute));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record(others, bytes);
+    }
+
+    public Object deserialize(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte format = in.readByte();
+            if (format == SECURITY_CONTEXT) {
+                PersonDetails person = new PersonDetails(in.readLong(), in.readUTF(), null, in.readUTF());
+                return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(person, null,
+                        person.getAuthorities()));
+            }
+            if (format == CSRF_TOKEN)
+                return new DefaultCsrfToken(in.readUTF(), in.readUTF(), in.readUTF());
+            return deserializer.convert(in.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        securityContexts = summary(registry, "security_context");
+        csrfTokens = summary(registry, "csrf_token");
+        others = summary(registry, "other");
+    }
+
+    private static DistributionSummary summary(MeterRegistry registry, String kind) {
+        return DistributionSummary.builder("library.session.attribute.size")
+                .tag("kind", kind)
+                .baseUnit("bytes")
+                .description("Serialized size of session attributes written to the session store")
+                .register(registry);
+    }
+
+    private static byte[] record(DistributionSummary summary, ByteArrayOutputStream bytes) {
+        byte[] result = bytes.toByteArray();
+        if (summary != null)
+            summary.record(result.length);
+        return result;
+    }
+}
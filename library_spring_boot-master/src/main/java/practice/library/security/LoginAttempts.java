@@ -0,0 +1,122 @@
+package practice.library.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import practice.library.cluster.DatabaseClock;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Счётчики попыток входа в таблице login_attempt, общие для всех узлов: окно считается так же, как
+// в SlidingWindowLimiter, но попытки текущего интервала засчитывает условный UPDATE, поэтому лимит
+// не превышается и при одновременных попытках на разных узлах. Интервалы отсчитываются по часам базы
+// (DatabaseClock), сверка с ними повторяется при каждом обслуживании
+public class LoginAttempts implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginAttempts.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long windowMillis;
+
+    private final DatabaseClock clock;
+
+    private final ScheduledExecutorService maintenance;
+
+    public LoginAttempts(JdbcTemplate jdbcTemplate, long windowMillis, LongSupplier nanoTime) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.windowMillis = windowMillis;
+        this.clock = new DatabaseClock(nanoTime);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-attempts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        clock.sync(jdbcTemplate);
+    }
+
+    // Засчитывает попытку, если у ключа за окно их меньше limit; отклонённые попытки в окно не попадают
+    public boolean tryAcquire(String scope, String key, int limit) {
+        long now = millis();
+        long start = now - Math.floorMod(now, windowMillis);
+        double elapsed = (double) (now - start) / windowMillis;
+
+        for (;;) {
+            Integer current = null;
+            int previous = 0;
+            for (Window window : jdbcTemplate.query("select window_start, attempts from login_attempt " +
+                            "where scope = ? and attempt_key = ? and window_start in (?, ?)",
+                    (rs, row) -> new Window(rs.getLong("window_start"), rs.getInt("attempts")),
+                    scope, key, start, start - windowMillis)) {
+                if (window.start() == start)
+                    current = window.attempts();
+                else
+                    previous = window.attempts();
+            }
+
+            // Сколько попыток текущего интервала помещается в лимит рядом с остатком предыдущего
+            int room = (int) Math.floor(limit - previous * (1 - elapsed));
+            if (room < 1)
+                return false;
+            if (current != null)
+                return jdbcTemplate.update("update login_attempt set attempts = attempts + 1 " +
+                        "where scope = ? and attempt_key = ? and window_start = ? and attempts < ?",
+                        scope, key, start, room) == 1;
+            try {
+                jdbcTemplate.update("insert into login_attempt (scope, attempt_key, window_start, attempts) " +
+                        "values (?, ?, ?, 1)", scope, key, start);
+                return true;
+            } catch (DuplicateKeyException e) {
+                // Строку интервала успел вставить другой узел — попытка засчитывается через UPDATE
+            }
+        }
+    }
+
+    // Снимает засчитанную попытку текущего интервала, если её всё же отклонила другая проверка
+    public void release(String scope, String key) {
+        long now = millis();
+        jdbcTemplate.update("update login_attempt set attempts = attempts - 1 " +
+                        "where scope = ? and attempt_key = ? and window_start = ? and attempts > 0",
+                scope, key, now - Math.floorMod(now, windowMillis));
+    }
+
+    // Забывает ключ, например после успешного входа
+    public void reset(String scope, String key) {
+        jdbcTemplate.update("delete from login_attempt where scope = ? and attempt_key = ?", scope, key);
+    }
+
+    // Интервалы, целиком вышедшие из окна, больше не нужны ни одному узлу
+    public int purge() {
+        return jdbcTemplate.update("delete from login_attempt where window_start < ?", millis() - 2 * windowMillis);
+    }
+
+    // Время по часам базы в миллисекундах
+    public long millis() {
+        return clock.millis();
+    }
+
+    public void scheduleMaintenance(long periodMillis) {
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                clock.sync(jdbcTemplate);
+                purge();
+            } catch (DataAccessException e) {
+                log.error("Login attempts maintenance failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+    }
+
+    private record Window(long start, int attempts) {
+    }
+}
@@ -0,0 +1,166 @@
+package practice.library.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+// Попытки входа по паре имя пользователя и адрес клиента и по одному адресу. Проверяется до AuthenticationProvider,
+// так что отклонённая попытка не стоит ни запроса к базе, ни проверки BCrypt. Лимит имени считается отдельно для
+// каждого адреса: иначе любой мог бы подбором с одного адреса заблокировать вход чужой учётной записи, в том числе
+// администратора. Перебор одного имени с многих адресов сдерживают лимит адреса и стоимость BCrypt.
+// Счётчики в памяти отсекают перебор на этом узле без запросов к базе, а попытку, которую они пропустили,
+// засчитывают ещё и общие для всех узлов LoginAttempts: иначе за балансировщиком лимит умножался бы на число узлов
+public class LoginThrottle implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginThrottle.class);
+
+    private static final String USERNAME = "username";
+
+    private static final String IP = "ip";
+
+    // Имя длиннее допустимого для Person всё равно не найдётся, а в ключе оно занимало бы память
+    private static final int MAX_USERNAME_LENGTH = 100;
+
+    private final SlidingWindowLimiter usernames;
+
+    private final SlidingWindowLimiter addresses;
+
+    private final LoginAttempts shared;
+
+    private final int usernameLimit;
+
+    private final int ipLimit;
+
+    private volatile Counter rejectedByUsername;
+
+    private volatile Counter rejectedByAddress;
+
+    private volatile Counter evicted;
+
+    public LoginThrottle(int usernameLimit, int ipLimit, long windowNanos, int capacity, LongSupplier clock) {
+        this(usernameLimit, ipLimit, windowNanos, capacity, clock, null);
+    }
+
+    public LoginThrottle(int usernameLimit, int ipLimit, long windowNanos, int capacity, LongSupplier clock,
+                         LoginAttempts shared) {
+        this.usernames = new SlidingWindowLimiter(usernameLimit, windowNanos, capacity, clock);
+        this.addresses = new SlidingWindowLimiter(ipLimit, windowNanos, capacity, clock);
+        this.shared = shared;
+        this.usernameLimit = usernameLimit;
+        this.ipLimit = ipLimit;
+    }
+
+    // false — попыток с этим именем с этого адреса или со всего адреса за окно слишком много. Оба лимита
+    // проверяются до того, как засчитать попытку, чтобы отклонённая по адресу попытка не расходовала лимит имени
+    public boolean tryAcquire(String username, String address) {
+        String key = usernameKey(username, address);
+        if (!usernames.hasRoom(key)) {
+            increment(rejectedByUsername);
+            return false;
+        }
+        if (!addresses.hasRoom(address)) {
+            increment(rejectedByAddress);
+            return false;
+        }
+
+        SlidingWindowLimiter.Outcome byUsername = usernames.tryAcquire(key);
+        if (!byUsername.acquired()) {
+            increment(rejectedByUsername);
+            return false;
+        }
+        // Адрес мог исчерпаться параллельным запросом после проверки — тогда попытка имени возвращается
+        SlidingWindowLimiter.Outcome byAddress = addresses.tryAcquire(address);
+        if (!byAddress.acquired()) {
+            usernames.release(key);
+            increment(rejectedByAddress);
+            return false;
+        }
+        if (!tryAcquireShared(key, address)) {
+            usernames.release(key);
+            addresses.release(address);
+            return false;
+        }
+        countEviction(byUsername);
+        countEviction(byAddress);
+        return true;
+    }
+
+    // После успешного входа прежние попытки пользователя с этого адреса не мешают ему войти снова
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        if (!(event.getAuthentication().getDetails() instanceof WebAuthenticationDetails details))
+            return;
+        String key = usernameKey(event.getAuthentication().getName(), details.getRemoteAddress());
+        usernames.reset(key);
+        if (shared != null) {
+            try {
+                shared.reset(USERNAME, key);
+            } catch (DataAccessException e) {
+                log.warn("Could not reset shared login attempts", e);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        rejectedByUsername = Counter.builder("library.login.rejected")
+                .tag("key", USERNAME)
+                .description("Login attempts rejected by the throttle before authentication")
+                .register(registry);
+        rejectedByAddress = Counter.builder("library.login.rejected")
+                .tag("key", IP)
+                .description("Login attempts rejected by the throttle before authentication")
+                .register(registry);
+        evicted = Counter.builder("library.login.throttle.evictions")
+                .description("Active login throttle entries evicted to stay within capacity")
+                .register(registry);
+    }
+
+    // Если база недоступна, решают счётчики узла: вход без базы всё равно не пройдёт
+    private boolean tryAcquireShared(String key, String address) {
+        if (shared == null)
+            return true;
+        try {
+            if (!shared.tryAcquire(USERNAME, key, usernameLimit)) {
+                increment(rejectedByUsername);
+                return false;
+            }
+            if (!shared.tryAcquire(IP, address, ipLimit)) {
+                shared.release(USERNAME, key);
+                increment(rejectedByAddress);
+                return false;
+            }
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Shared login attempts are unavailable, using the node's own limits", e);
+            return true;
+        }
+    }
+
+    // Адрес идёт первым: в имени может встретиться любой символ, в адресе пробела не бывает
+    private static String usernameKey(String username, String address) {
+        String name = username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+        if (name.length() > MAX_USERNAME_LENGTH)
+            name = name.substring(0, MAX_USERNAME_LENGTH);
+        return address + " " + name;
+    }
+
+    private void countEviction(SlidingWindowLimiter.Outcome outcome) {
+        if (outcome == SlidingWindowLimiter.Outcome.ACQUIRED_EVICTING)
+            increment(evicted);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null)
+            counter.increment();
+    }
+}
@@ -0,0 +1,41 @@
+package practice.library.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Стоит в цепочке Spring Security перед UsernamePasswordAuthenticationFilter. Адрес клиента — getRemoteAddr():
+// X-Forwarded-For учитывается Tomcat (server.forward-headers-strategy=native) только от прокси из
+// server.tomcat.remoteip.internal-proxies (по умолчанию только loopback), иначе клиент подменял бы адрес
+// и обходил лимит
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    private final RequestMatcher loginRequest;
+
+    private final String blockedUrl;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle, String loginProcessingUrl, String blockedUrl) {
+        this.loginThrottle = loginThrottle;
+        this.loginRequest = new AntPathRequestMatcher(loginProcessingUrl, "POST");
+        this.blockedUrl = blockedUrl;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (loginRequest.matches(request)
+                && !loginThrottle.tryAcquire(request.getParameter("username"), request.getRemoteAddr())) {
+            response.sendRedirect(request.getContextPath() + blockedUrl);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,125 @@
+package practice.library.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Ограничитель параллельных хеширований, а не неблокирующее хеширование: BCrypt идёт на отдельном пуле
+// из threads потоков, но поток Tomcat ждёт результат в future.get. Пул лишь не даёт всплеску входов занять
+// все ядра, а при переполнении очереди или по таймауту запрос сразу получает AuthenticationServiceException.
+// cancel снимает задачу, ещё ждущую в очереди; начатый BCrypt прерывания не проверяет и занимает поток пула
+// до конца, даже когда запрос уже получил отказ. Вне входа (регистрация, смена пароля) сервисы превращают
+// отказ в PasswordHashingUnavailableException — ответ 503.
+// Как MeterBinder публикует очередь и активные потоки пула, время хеширования и число отказов
+public class OffloadedPasswordEncoder implements PasswordEncoder, MeterBinder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    private volatile Timer encodeTimer;
+
+    private volatile Timer matchesTimer;
+
+    private volatile Counter rejections;
+
+    public OffloadedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMillis) {
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return offload(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return offload(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.password.queue", this, OffloadedPasswordEncoder::getQueueSize)
+                .description("Password hashing tasks waiting in the pool queue")
+                .register(registry);
+        Gauge.builder("library.password.active", this, OffloadedPasswordEncoder::getActiveCount)
+                .description("Pool threads busy hashing passwords")
+                .register(registry);
+        encodeTimer = hashingTimer(registry, "encode");
+        matchesTimer = hashingTimer(registry, "matches");
+        rejections = Counter.builder("library.password.rejected")
+                .description("Hashing requests rejected because the queue was full")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static Timer hashingTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("library.password.hashing")
+                .description("Password hashing time in the pool, excluding queueing")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private <T> T offload(Callable<T> task, Timer timer) {
+        Future<T> future;
+        try {
+            future = executor.submit(timer == null ? task : () -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            if (rejections != null)
+                rejections.increment();
+            throw new AuthenticationServiceException("Сервер перегружен, повторите попытку позже", e);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Хеширование пароля прервано", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new AuthenticationServiceException("Превышено время хеширования пароля", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
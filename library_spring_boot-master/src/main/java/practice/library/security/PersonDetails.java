@@ -5,30 +5,48 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import practice.library.models.Person;
 
+import java.io.Serial;
 import java.util.Collection;
 import java.util.Collections;
 
-public class PersonDetails implements UserDetails {
+// Неизменяемый снимок пользователя: в сессии и кэше хранятся только нужные для авторизации поля, а не сущность Person
+public final class PersonDetails implements UserDetails {
 
-    private final Person person;
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    private final String username;
+
+    private final String password;
+
+    private final String role;
+
+    public PersonDetails(long id, String username, String password, String role) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.role = role;
+    }
 
     public PersonDetails(Person person) {
-        this.person = person;
+        this(person.getId(), person.getUsername(), person.getPassword(), person.getRole());
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Collections.singletonList(new SimpleGrantedAuthority(person.getRole()));
+        return Collections.singletonList(new SimpleGrantedAuthority(role));
     }
 
     @Override
     public String getPassword() {
-        return this.person.getPassword();
+        return this.password;
     }
 
     @Override
     public String getUsername() {
-        return this.person.getUsername();
+        return this.username;
     }
 
     @Override
@@ -51,8 +69,15 @@ public class PersonDetails implements UserDetails {
         return true;
     }
 
-    // Для получения информации о пользователе
-    public Person getPerson () {
-        return this.person;
+    public long getId() {
+        return this.id;
+    }
+
+    public String getRole() {
+        return this.role;
+    }
+
+    public boolean isAdmin() {
+        return "ROLE_ADMIN".equals(role);
     }
 }
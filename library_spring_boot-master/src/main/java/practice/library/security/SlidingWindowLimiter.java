@@ -0,0 +1,165 @@
+package practice.library.security;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+// Ограничение числа попыток на ключ за скользящее окно без блокировок. Счётчик ключа — неизменяемая запись
+// в ячейке таблицы фиксированного размера, меняется через compareAndSet, так что потоки с разными ключами
+// не мешают друг другу. Окно считается как у sliding window counter: попытки текущего интервала плюс доля
+// попыток предыдущего, ещё не вышедшая из окна. Ключ ищется в нескольких соседних ячейках; если места нет,
+// вытесняется запись с наименьшим счётом, поэтому память ограничена capacity записями при любом числе ключей
+public class SlidingWindowLimiter {
+
+    private static final int PROBES = 8;
+
+    private final AtomicReferenceArray<Window> slots;
+
+    private final int mask;
+
+    private final int limit;
+
+    private final long windowNanos;
+
+    private final LongSupplier clock;
+
+    public SlidingWindowLimiter(int limit, long windowNanos, int capacity, LongSupplier clock) {
+        if (limit <= 0 || windowNanos <= 0 || capacity <= 0)
+            throw new IllegalArgumentException("limit, window and capacity must be positive");
+        int size = Integer.highestOneBit(Math.max(capacity, PROBES) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.limit = limit;
+        this.windowNanos = windowNanos;
+        this.clock = clock;
+    }
+
+    // Засчитывает попытку, если лимит ещё не исчерпан; отклонённые попытки в окно не попадают
+    public Outcome tryAcquire(String key) {
+        int start = spread(key.hashCode());
+        for (;;) {
+            long now = clock.getAsLong();
+            long interval = Math.floorDiv(now, windowNanos);
+            double elapsed = (double) Math.floorMod(now, windowNanos) / windowNanos;
+
+            int index = -1;
+            Window found = null;
+            int victim = -1;
+            double victimScore = Double.MAX_VALUE;
+            for (int probe = 0; probe < PROBES; probe++) {
+                int candidate = (start + probe) & mask;
+                Window window = slots.get(candidate);
+                if (window != null && window.key.equals(key)) {
+                    index = candidate;
+                    found = window;
+                    break;
+                }
+                double score = window == null ? -1 : window.roll(interval).estimate(elapsed);
+                if (score < victimScore) {
+                    victim = candidate;
+                    victimScore = score;
+                }
+            }
+
+            Window current;
+            Window expected;
+            boolean evicting = false;
+            if (found != null) {
+                expected = found;
+                current = found.roll(interval);
+            } else {
+                index = victim;
+                expected = slots.get(victim);
+                current = new Window(key, interval, 0, 0);
+                evicting = expected != null && victimScore > 0;
+            }
+
+            if (current.estimate(elapsed) + 1 > limit)
+                return Outcome.REJECTED;
+            if (slots.compareAndSet(index, expected, current.increment()))
+                return evicting ? Outcome.ACQUIRED_EVICTING : Outcome.ACQUIRED;
+        }
+    }
+
+    // Есть ли у ключа место для ещё одной попытки; ничего не засчитывает
+    public boolean hasRoom(String key) {
+        return estimate(key) + 1 <= limit;
+    }
+
+    // Снимает засчитанную попытку текущего интервала, если её всё же отклонила другая проверка
+    public void release(String key) {
+        int start = spread(key.hashCode());
+        for (int probe = 0; probe < PROBES; probe++) {
+            int index = (start + probe) & mask;
+            for (;;) {
+                Window window = slots.get(index);
+                if (window == null || !window.key.equals(key))
+                    break;
+                Window current = window.roll(Math.floorDiv(clock.getAsLong(), windowNanos));
+                if (current.current == 0 || slots.compareAndSet(index, window, current.decrement()))
+                    return;
+            }
+        }
+    }
+
+    // Забывает ключ, например после успешного входа
+    public void reset(String key) {
+        int start = spread(key.hashCode());
+        for (int probe = 0; probe < PROBES; probe++) {
+            int index = (start + probe) & mask;
+            Window window = slots.get(index);
+            while (window != null && window.key.equals(key) && !slots.compareAndSet(index, window, null))
+                window = slots.get(index);
+        }
+    }
+
+    // Оценка числа попыток ключа в текущем окне
+    public double estimate(String key) {
+        long now = clock.getAsLong();
+        int start = spread(key.hashCode());
+        for (int probe = 0; probe < PROBES; probe++) {
+            Window window = slots.get((start + probe) & mask);
+            if (window != null && window.key.equals(key))
+                return window.roll(Math.floorDiv(now, windowNanos))
+                        .estimate((double) Math.floorMod(now, windowNanos) / windowNanos);
+        }
+        return 0;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public enum Outcome {
+        ACQUIRED, ACQUIRED_EVICTING, REJECTED;
+
+        public boolean acquired() {
+            return this != REJECTED;
+        }
+    }
+
+    private record Window(String key, long interval, int current, int previous) {
+
+        // Состояние на указанный интервал: прошлый интервал становится предыдущим, более старые забываются
+        Window roll(long now) {
+            if (interval == now)
+                return this;
+            return new Window(key, now, 0, interval == now - 1 ? current : 0);
+        }
+
+        double estimate(double elapsed) {
+            return previous * (1 - elapsed) + current;
+        }
+
+        Window increment() {
+            return new Window(key, interval, current + 1, previous);
+        }
+
+        Window decrement() {
+            return new Window(key, interval, current - 1, previous);
+        }
+    }
+}
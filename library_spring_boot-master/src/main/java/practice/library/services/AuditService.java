@@ -0,0 +1,75 @@
+package practice.library.services;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import practice.library.config.MetricsConfig;
+import practice.library.models.AuditEvent;
+import practice.library.repositories.AuditEventsRepository;
+import practice.library.util.Cursor;
+import practice.library.util.KeysetPage;
+
+import java.util.List;
+
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Transactional(readOnly = true)
+public class AuditService {
+
+    private final AuditEventsRepository auditEventsRepository;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
+    @Autowired
+    public AuditService(AuditEventsRepository auditEventsRepository,
+                        @Value("${library.page.default-size}") int defaultPageSize,
+                        @Value("${library.page.max-size}") int maxPageSize) {
+        this.auditEventsRepository = auditEventsRepository;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // История книги от новых событий к старым
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public KeysetPage<AuditEvent> forBook(long bookId, String cursor, Integer eventsPerPage) {
+        int size = pageSize(eventsPerPage);
+        Cursor after = Cursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<AuditEvent> events = after == null
+                ? auditEventsRepository.findByBookIdOrderByIdDesc(bookId, limit)
+                : auditEventsRepository.findByBookIdAndIdLessThanOrderByIdDesc(bookId, after.id(), limit);
+        return page(events, size);
+    }
+
+    // Выдачи и возвраты читателя от новых к старым
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public KeysetPage<AuditEvent> forPerson(long personId, String cursor, Integer eventsPerPage) {
+        int size = pageSize(eventsPerPage);
+        Cursor after = Cursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<AuditEvent> events = after == null
+                ? auditEventsRepository.findByPersonIdOrderByIdDesc(personId, limit)
+                : auditEventsRepository.findByPersonIdAndIdLessThanOrderByIdDesc(personId, after.id(), limit);
+        return page(events, size);
+    }
+
+    private static KeysetPage<AuditEvent> page(List<AuditEvent> events, int size) {
+        if (events.size() <= size)
+            return new KeysetPage<>(events, null);
+        return new KeysetPage<>(events.subList(0, size), new Cursor(null, events.get(size - 1).getId()).encode());
+    }
+
+    private int pageSize(Integer eventsPerPage) {
+        if (eventsPerPage == null || eventsPerPage <= 0)
+            return defaultPageSize;
+        return Math.min(eventsPerPage, maxPageSize);
+    }
+}
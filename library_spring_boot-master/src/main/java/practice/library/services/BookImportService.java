@@ -0,0 +1,265 @@
+package practice.library.services;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.audit.AuditLog;
+import practice.library.cluster.ChangeLog;
+import practice.library.config.CacheConfig;
+import practice.library.dto.BookDTO;
+import practice.library.models.AuditEventType;
+import practice.library.models.Book;
+import practice.library.repositories.BooksRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.BooksSearchIndex;
+import practice.library.util.ImportReport;
+import practice.library.views.ViewVersions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Потоковый импорт каталога: строки читаются по одной, сохраняются пакетами по library.import.chunk-size,
+// каждый пакет в своей транзакции, так что ошибка в пакете не откатывает уже сохранённые
+@Service
+public class BookImportService {
+
+    private static final String CSV_HEADER = "title,author,yearOfProd";
+
+    private final BooksRepository booksRepository;
+
+    private final BooksSearchIndex booksSearchIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final EntityManager entityManager;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final int chunkSize;
+
+    private final int maxErrors;
+
+    private final AuditLog auditLog;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ViewVersions viewVersions;
+
+    private final ChangeLog changeLog;
+
+    @Autowired
+    public BookImportService(BooksRepository booksRepository, BooksSearchIndex booksSearchIndex,
+                             TransactionTemplate transactionTemplate, EntityManager entityManager,
+                             Validator validator, ObjectMapper objectMapper,
+                             @Value("${library.import.chunk-size}") int chunkSize,
+                             @Value("${library.import.max-errors}") int maxErrors,
+                             AuditLog auditLog, AvailabilityIndex availabilityIndex,
+                             ViewVersions viewVersions, ChangeLog changeLog) {
+        this.booksRepository = booksRepository;
+        this.booksSearchIndex = booksSearchIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.auditLog = auditLog;
+        this.availabilityIndex = availabilityIndex;
+        this.viewVersions = viewVersions;
+        this.changeLog = changeLog;
+    }
+
+    // Одна книга на строку: title,author,yearOfProd; заголовок необязателен, поля в кавычках как в RFC 4180
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true)
+    })
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ImportReport importCsv(InputStream in) throws IOException {
+        Chunks chunks = new Chunks();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        int row = 0;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                first = false;
+                line = line.replace("\uFEFF", "");
+                if (line.strip().equalsIgnoreCase(CSV_HEADER))
+                    continue;
+            }
+            if (line.isBlank())
+                continue;
+
+            row++;
+            List<String> fields = csvFields(line);
+            if (fields.size() != 3) {
+                chunks.reject(row, "Ожидается 3 поля: " + CSV_HEADER);
+                continue;
+            }
+            try {
+                int yearOfProd = Integer.parseInt(fields.get(2).strip());
+                chunks.add(row, new Book(fields.get(0).strip(), fields.get(1).strip(), yearOfProd));
+            } catch (NumberFormatException e) {
+                chunks.reject(row, "Год издания должен быть числом");
+            }
+        }
+        return chunks.finish();
+    }
+
+    // JSON-массив книг или NDJSON (по объекту на строку); поля как в BookDTO, id и ownerId игнорируются
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true)
+    })
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ImportReport importJson(InputStream in) throws IOException {
+        Chunks chunks = new Chunks();
+
+        try (MappingIterator<BookDTO> books = objectMapper.readerFor(BookDTO.class).readValues(in)) {
+            int row = 0;
+            while (true) {
+                try {
+                    if (!books.hasNextValue())
+                        break;
+                } catch (JsonParseException e) {
+                    chunks.reject(row + 1, "Некорректный JSON, импорт остановлен: " + e.getOriginalMessage());
+                    break;
+                }
+
+                row++;
+                try {
+                    BookDTO book = books.nextValue();
+                    chunks.add(row, new Book(book.title(), book.author(), book.yearOfProd()));
+                } catch (JsonParseException e) {
+                    chunks.reject(row, "Некорректный JSON, импорт остановлен: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonProcessingException e) {
+                    chunks.reject(row, "Некорректная запись: " + e.getOriginalMessage());
+                }
+            }
+        }
+        return chunks.finish();
+    }
+
+    static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Копит прошедшие валидацию книги и сохраняет их пакетом; отчёт собирается по ходу чтения
+    private class Chunks {
+
+        private final List<Book> books = new ArrayList<>(chunkSize);
+
+        private final List<Integer> rows = new ArrayList<>(chunkSize);
+
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+
+        private int imported;
+
+        private int rejected;
+
+        void add(int row, Book book) {
+            Set<ConstraintViolation<Book>> violations = validator.validate(book);
+            if (!violations.isEmpty()) {
+                reject(row, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+
+            books.add(book);
+            rows.add(row);
+            if (books.size() >= chunkSize)
+                flush();
+        }
+
+        void reject(int row, String message) {
+            rejected++;
+            if (errors.size() < maxErrors)
+                errors.add(new ImportReport.RowError(row, message));
+        }
+
+        ImportReport finish() {
+            flush();
+            return new ImportReport(imported, rejected, errors);
+        }
+
+        private void flush() {
+            if (books.isEmpty())
+                return;
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    booksRepository.saveAll(books);
+                    booksRepository.flush();
+                    books.forEach(book -> {
+                        booksSearchIndex.putAfterCommit(BooksSearchIndex.document(book));
+                        availabilityIndex.putAfterCommit(book.getId(), null);
+                        changeLog.recordBook(book.getId());
+                        auditLog.recordAfterCommit(AuditEventType.BOOK_CREATED, book.getId(), null,
+                                AuditLog.describe(book));
+                    });
+                    viewVersions.touchCatalogAfterCommit();
+                    // Сохранённые книги больше не нужны в контексте, иначе он растёт на весь импорт
+                    entityManager.clear();
+                });
+                imported += books.size();
+            } catch (DataAccessException e) {
+                String message = "Пакет не сохранён: " + e.getMostSpecificCause().getMessage();
+                rows.forEach(row -> reject(row, message));
+                entityManager.clear();
+            }
+            books.clear();
+            rows.clear();
+        }
+    }
+}
@@ -1,97 +1,361 @@
 package practice.library.services;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import practice.library.audit.AuditLog;
+import practice.library.cluster.ChangeLog;
+import practice.library.config.CacheConfig;
+import practice.library.config.MetricsConfig;
+import practice.library.models.AuditEventType;
 import practice.library.models.Book;
 import practice.library.models.Person;
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+import practice.library.projections.OverdueLoanView;
 import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.BooksSearchIndex;
+import practice.library.search.SearchIndex;
+import practice.library.util.Availability;
+import practice.library.util.BulkLoanResult;
+import practice.library.util.Cursor;
+import practice.library.util.KeysetPage;
+import practice.library.util.LoanConflictException;
+import practice.library.util.OverduePolicy;
+import practice.library.util.Pages;
+import practice.library.util.SearchPage;
+import practice.library.views.ViewVersions;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Transactional(readOnly = true)
 public class BookService {
 
     private final BooksRepository booksRepository;
 
+    private final PeopleRepository peopleRepository;
+
     private final PeopleService peopleService;
 
+    private final BooksSearchIndex booksSearchIndex;
+
+    private final OverduePolicy overduePolicy;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
+    private final int maxBulkSize;
+
+    private final AuditLog auditLog;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ViewVersions viewVersions;
+
+    private final ChangeLog changeLog;
+
     @Autowired
-    public BookService(BooksRepository booksRepository, PeopleService peopleService) {
+    public BookService(BooksRepository booksRepository, PeopleRepository peopleRepository,
+                       PeopleService peopleService,
+                       BooksSearchIndex booksSearchIndex, OverduePolicy overduePolicy,
+                       @Value("${library.page.default-size}") int defaultPageSize,
+                       @Value("${library.page.max-size}") int maxPageSize,
+                       @Value("${library.loans.max-bulk-size}") int maxBulkSize,
+                       AuditLog auditLog, AvailabilityIndex availabilityIndex, ViewVersions viewVersions,
+                       ChangeLog changeLog) {
         this.booksRepository = booksRepository;
+        this.peopleRepository = peopleRepository;
         this.peopleService = peopleService;
+        this.booksSearchIndex = booksSearchIndex;
+        this.overduePolicy = overduePolicy;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBulkSize = maxBulkSize;
+        this.auditLog = auditLog;
+        this.availabilityIndex = availabilityIndex;
+        this.viewVersions = viewVersions;
+        this.changeLog = changeLog;
     }
 
-    public List<Book> index(boolean sorted) {
-        if (sorted) {
-            return booksRepository.findAll(Sort.by("yearOfProd"));
-        }
-        else {
-            return booksRepository.findAll();
-        }
+    // Без параметров пагинации отдаём первую страницу, а не всю таблицу. У перегрузок index общий кэш страниц,
+    // поэтому ключ каждой начинается со своего префикса
+    @Cacheable(cacheNames = CacheConfig.BOOK_PAGES, key = "'first:' + #sorted")
+    public List<BookView> index(boolean sorted) {
+        return index(0, defaultPageSize, sorted);
     }
 
-    public List<Book> index(Integer page, Integer booksPerPage, boolean sorted) {
+    @Cacheable(cacheNames = CacheConfig.BOOK_PAGES, key = "'offset:' + #page + ':' + #booksPerPage + ':' + #sorted")
+    public List<BookView> index(Integer page, Integer booksPerPage, boolean sorted) {
+        page = Pages.checkNumber(page);
+        booksPerPage = pageSize(booksPerPage);
         if(sorted) {
-            return booksRepository.findAll(PageRequest.of(page, booksPerPage,
-                    Sort.by("yearOfProd"))).getContent();
-        } else return booksRepository.findAll(PageRequest.of(page, booksPerPage)).getContent();
+            return booksRepository.findViews(PageRequest.of(page, booksPerPage,
+                    Sort.by("yearOfProd")));
+        } else return booksRepository.findViews(PageRequest.of(page, booksPerPage));
     }
 
+    // Постраничный вывод по курсору (yearOfProd, id) без OFFSET
+    @Cacheable(cacheNames = CacheConfig.BOOK_PAGES, key = "'cursor:' + #cursor + ':' + #booksPerPage")
+    public KeysetPage<BookView> index(String cursor, Integer booksPerPage) {
+        int size = pageSize(booksPerPage);
+        Cursor after = Cursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<BookView> books = after == null
+                ? booksRepository.findFirstPage(limit)
+                : booksRepository.findPageAfter((int) after.requiredKey(), after.id(), limit);
+
+        if (books.size() <= size)
+            return new KeysetPage<>(books, null);
+
+        BookView last = books.get(size - 1);
+        return new KeysetPage<>(books.subList(0, size),
+                new Cursor((long) last.getYearOfProd(), last.getId()).encode());
+    }
+
+    // Только свободные книги по возрастанию id: отбор делает индекс доступности, из базы читается одна страница
+    public KeysetPage<BookView> available(String cursor, Integer booksPerPage) {
+        int size = pageSize(booksPerPage);
+        Cursor after = Cursor.decode(cursor);
+
+        List<Long> ids = availabilityIndex.available(after == null ? 0 : after.id(), size + 1);
+        if (ids.isEmpty())
+            return new KeysetPage<>(Collections.emptyList(), null);
+
+        List<Long> pageIds = ids.size() <= size ? ids : ids.subList(0, size);
+        List<BookView> books = SearchIndex.inRankOrder(pageIds, booksRepository.findViewsByIdIn(pageIds),
+                BookView::getId);
+        if (ids.size() <= size)
+            return new KeysetPage<>(books, null);
+        return new KeysetPage<>(books, new Cursor(null, pageIds.get(size - 1)).encode());
+    }
+
+    public Availability availability() {
+        long available = availabilityIndex.availableCount();
+        long onLoan = availabilityIndex.onLoanCount();
+        return new Availability(available + onLoan, available, onLoan);
+    }
+
+    // Отчёт о просроченных книгах: старые выдачи первыми, страницы по курсору (takenAt, id)
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public KeysetPage<OverdueLoanView> overdue(String cursor, Integer booksPerPage) {
+        int size = pageSize(booksPerPage);
+        Cursor after = Cursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, size + 1);
+        Date overdueSince = overduePolicy.overdueSince();
+
+        List<OverdueLoanView> loans = after == null
+                ? booksRepository.findOverdueFirstPage(overdueSince, limit)
+                : booksRepository.findOverduePageAfter(overdueSince, new Date(after.requiredKey()), after.id(), limit);
+
+        if (loans.size() <= size)
+            return new KeysetPage<>(loans, null);
+
+        OverdueLoanView last = loans.get(size - 1);
+        return new KeysetPage<>(loans.subList(0, size), new Cursor(last.getTakenAt().getTime(), last.getId()).encode());
+    }
+
+    // Сущность для формы редактирования; страницы и API читают кэшируемую карточку
     public Book show(long id) {
-        Optional<Book> foundBook = booksRepository.findById(id);
+        Optional<Book> foundBook = booksRepository.findWithOwnerById(id);
         return foundBook.orElse(null);
     }
 
+    @Cacheable(CacheConfig.BOOKS)
+    public BookCardView card(long id) {
+        return booksRepository.findCardById(id).orElse(null);
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true)
+    })
     @Transactional
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void save(Book book) {
-        booksRepository.save(book);
+        Book saved = booksRepository.save(book);
+        booksSearchIndex.putAfterCommit(BooksSearchIndex.document(saved));
+        availabilityIndex.putAfterCommit(saved.getId(), AvailabilityIndex.ownerId(saved));
+        viewVersions.touchBookAfterCommit(saved.getId());
+        changeLog.recordBook(saved.getId());
+        auditLog.recordAfterCommit(AuditEventType.BOOK_CREATED, saved.getId(), null, AuditLog.describe(saved));
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true)
+    })
     @Transactional
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    // Форма правит только описание книги: выдачу меняют takeBook и freeBook, поэтому владелец и дата выдачи
+    // остаются прежними, а индекс доступности и журнал возвратов правка не трогает. Условный UPDATE только
+    // редактируемых колонок вместо сохранения всей строки: выдача между загрузкой формы и правкой не теряется
     public void update(long id, Book updatedBook) {
-        updatedBook.setUpdatedAt(new Date());
-        updatedBook.setUpdatedBy(peopleService.getPersonDetails().getUsername());
+        if (booksRepository.updateDescription(id, updatedBook.getTitle(), updatedBook.getAuthor(),
+                updatedBook.getYearOfProd(), new Date(), peopleService.getPersonDetails().getUsername()) == 0)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Книга не найдена");
         updatedBook.setId(id);
-        booksRepository.save(updatedBook);
+        booksSearchIndex.putAfterCommit(BooksSearchIndex.document(updatedBook));
+        viewVersions.touchBookAfterCommit(id);
+        changeLog.recordBook(id);
+        auditLog.recordAfterCommit(AuditEventType.BOOK_UPDATED, id, null, AuditLog.describe(updatedBook));
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true)
+    })
     @Transactional
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void delete(long id) {
         booksRepository.deleteById(id);
+        booksSearchIndex.removeAfterCommit(id);
+        availabilityIndex.removeAfterCommit(id);
+        viewVersions.removeBookAfterCommit(id);
+        changeLog.recordBook(id);
+        auditLog.recordAfterCommit(AuditEventType.BOOK_DELETED, id, null, null);
     }
 
     public Person getOwner(long id) {
-        Optional<Book> bookOptional = booksRepository.findById(id);
+        Optional<Book> bookOptional = booksRepository.findWithOwnerById(id);
         return bookOptional.map(Book::getOwner).orElse(null);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true)
+    })
     @Transactional
     public void freeBook(long id) {
-        Optional<Book> bookOptional = booksRepository.findById(id);
-        bookOptional.ifPresent(book -> book.setOwner(null));
-        bookOptional.ifPresent(book -> book.setTakenAt(null));
-        bookOptional.ifPresent(booksRepository::save);
+        long ownerId = booksRepository.findOwnerId(id)
+                .orElseThrow(() -> loanConflict(id, "Книга уже свободна"));
+        if (booksRepository.freeIfTakenBy(id, ownerId) == 0)
+            throw loanConflict(id, "Книга уже свободна");
+        availabilityIndex.putAfterCommit(id, null);
+        viewVersions.touchBookAfterCommit(id);
+        changeLog.recordBook(id);
+        auditLog.recordAfterCommit(AuditEventType.BOOK_FREED, id, ownerId, null);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true)
+    })
     @Transactional
     public void takeBook(long id, Person person) {
-        Optional<Book> bookOptional = booksRepository.findById(id);
-        bookOptional.ifPresent(book -> book.setOwner(person));
-        bookOptional.ifPresent(book -> book.setTakenAt(new Date()));
-        bookOptional.ifPresent(booksRepository::save);
+        // Без проверки неизвестный читатель дошёл бы до внешнего ключа и вернулся бы ошибкой 500
+        if (!peopleRepository.existsById(person.getId()))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Читатель не найден");
+        if (booksRepository.takeIfFree(id, peopleRepository.getReferenceById(person.getId()), new Date()) == 0)
+            throw loanConflict(id, "Книга уже выдана другому читателю");
+        availabilityIndex.putAfterCommit(id, person.getId());
+        viewVersions.touchBookAfterCommit(id);
+        changeLog.recordBook(id);
+        auditLog.recordAfterCommit(AuditEventType.BOOK_TAKEN, id, person.getId(), null);
+    }
+
+    // Массовая выдача: строки блокируются одним запросом, изменения уходят пакетными UPDATE
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true)
+    })
+    @Transactional
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public BulkLoanResult takeBooks(Collection<Long> ids, long personId) {
+        Person owner = peopleRepository.findById(personId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Читатель не найден"));
+        Date takenAt = new Date();
+        return changeLoans(ids, AuditEventType.BOOK_TAKEN, book -> book.getOwner() == null, book -> {
+            book.setOwner(owner);
+            book.setTakenAt(takenAt);
+        });
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true)
+    })
+    @Transactional
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public BulkLoanResult freeBooks(Collection<Long> ids) {
+        return changeLoans(ids, AuditEventType.BOOK_FREED, book -> book.getOwner() != null, book -> {
+            book.setOwner(null);
+            book.setTakenAt(null);
+        });
+    }
+
+    public List<BookView> search(String contain) {
+        return search(contain, 0, defaultPageSize).content();
+    }
+
+    // Поиск по названию и автору через индекс триграмм, из базы читается только найденная страница
+    @Cacheable(CacheConfig.BOOK_SEARCH)
+    public SearchPage<BookView> search(String contain, int page, Integer booksPerPage) {
+        int size = pageSize(booksPerPage);
+        SearchPage<Long> ids = SearchPage.of(booksSearchIndex.searchWithNext(contain, Pages.checkNumber(page), size),
+                size);
+        if (ids.content().isEmpty())
+            return new SearchPage<>(Collections.emptyList(), false);
+        List<BookView> books = booksRepository.findViewsByIdIn(ids.content());
+        return new SearchPage<>(SearchIndex.inRankOrder(ids.content(), books, BookView::getId), ids.hasNext());
+    }
+
+    private BulkLoanResult changeLoans(Collection<Long> ids, AuditEventType type, Predicate<Book> allowed,
+                                       Consumer<Book> change) {
+        if (ids == null || ids.isEmpty())
+            return new BulkLoanResult(List.of(), List.of());
+        if (ids.size() > maxBulkSize)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "За один раз можно обработать не больше " + maxBulkSize + " книг");
+
+        Set<Long> conflicts = new TreeSet<>(ids);
+        List<Long> done = new ArrayList<>();
+        for (Book book : booksRepository.findForUpdateByIdIn(ids)) {
+            if (!allowed.test(book))
+                continue;
+            // Для возврата в журнал идёт прежний владелец, для выдачи — новый
+            Person before = book.getOwner();
+            change.accept(book);
+            Person reader = book.getOwner() != null ? book.getOwner() : before;
+            auditLog.recordAfterCommit(type, book.getId(), reader.getId(), null);
+            availabilityIndex.putAfterCommit(book.getId(), AvailabilityIndex.ownerId(book));
+            viewVersions.touchBookAfterCommit(book.getId());
+            changeLog.recordBook(book.getId());
+            done.add(book.getId());
+            conflicts.remove(book.getId());
+        }
+        return new BulkLoanResult(done, new ArrayList<>(conflicts));
+    }
+
+    // UPDATE не затронул строку: либо книги нет (404), либо её состояние уже изменил параллельный запрос (409)
+    private RuntimeException loanConflict(long id, String message) {
+        if (!booksRepository.existsById(id))
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Книга не найдена");
+        return new LoanConflictException(message);
     }
 
-    public List<Book> search(String contain) {
-        return booksRepository.findBookByTitleContainingIgnoreCase(contain);
+    private int pageSize(Integer booksPerPage) {
+        if (booksPerPage == null || booksPerPage <= 0)
+            return defaultPageSize;
+        return Math.min(booksPerPage, maxPageSize);
     }
 }
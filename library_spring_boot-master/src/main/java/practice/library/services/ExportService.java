@@ -0,0 +1,131 @@
+package practice.library.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import practice.library.dto.BookDTO;
+import practice.library.dto.LoanDTO;
+import practice.library.dto.PersonDTO;
+import practice.library.projections.BookView;
+import practice.library.projections.LoanRecordView;
+import practice.library.projections.PersonView;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.util.ExportFormat;
+import practice.library.util.OverduePolicy;
+
+import java.io.*;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Выгрузка пишет строки в ответ по мере чтения из курсора: память не зависит от размера таблиц.
+// Транзакция (и соединение) держится, пока клиент читает ответ
+@Service
+@Transactional(readOnly = true)
+public class ExportService {
+
+    private final BooksRepository booksRepository;
+
+    private final PeopleRepository peopleRepository;
+
+    private final OverduePolicy overduePolicy;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ExportService(BooksRepository booksRepository, PeopleRepository peopleRepository,
+                         OverduePolicy overduePolicy, ObjectMapper objectMapper) {
+        this.booksRepository = booksRepository;
+        this.peopleRepository = peopleRepository;
+        this.overduePolicy = overduePolicy;
+        this.objectMapper = objectMapper;
+    }
+
+    public void exportBooks(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<BookView> books = booksRepository.streamViews()) {
+            write(books.map(BookDTO::from), BookDTO.class, format, out);
+        }
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void exportPeople(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<PersonView> people = peopleRepository.streamViews()) {
+            write(people.map(PersonDTO::from), PersonDTO.class, format, out);
+        }
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void exportLoans(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<LoanRecordView> loans = booksRepository.streamLoans(overduePolicy.overdueSince())) {
+            write(loans.map(LoanDTO::from), LoanDTO.class, format, out);
+        }
+    }
+
+    private <T extends Record> void write(Stream<T> rows, Class<T> type, ExportFormat format,
+                                          OutputStream out) throws IOException {
+        Iterator<T> iterator = rows.iterator();
+        if (format == ExportFormat.NDJSON) {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                while (iterator.hasNext())
+                    writer.write(iterator.next());
+            }
+            out.write('\n');
+            return;
+        }
+
+        // Колонки CSV берутся из компонентов записи DTO, в том же порядке, что и поля JSON
+        RecordComponent[] columns = type.getRecordComponents();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                writer.write(',');
+            writer.write(columns[i].getName());
+        }
+        writer.write('\n');
+
+        while (iterator.hasNext()) {
+            T row = iterator.next();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0)
+                    writer.write(',');
+                writer.write(csvValue(value(row, columns[i])));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static Object value(Record row, RecordComponent column) {
+        try {
+            return column.getAccessor().invoke(row);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String csvValue(Object value) {
+        if (value == null)
+            return "";
+        String text;
+        if (value instanceof java.sql.Date date)
+            text = date.toLocalDate().toString();
+        else if (value instanceof Date date)
+            text = date.toInstant().toString();
+        else
+            text = value.toString();
+
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0)
+            return text;
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,10 +1,18 @@
 package practice.library.services;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import practice.library.cluster.ChangeLog;
+import practice.library.config.CacheConfig;
+import practice.library.config.MetricsConfig;
 import practice.library.models.Person;
 import practice.library.repositories.PeopleRepository;
 import practice.library.security.PersonDetails;
@@ -12,16 +20,22 @@ import practice.library.security.PersonDetails;
 import java.util.Optional;
 
 @Service
-public class PeopleDetailService implements UserDetailsService {
+@Timed(MetricsConfig.SERVICE_TIMER)
+public class PeopleDetailService implements UserDetailsService, UserDetailsPasswordService {
 
     private final PeopleRepository peopleRepository;
 
+    private final ChangeLog changeLog;
+
     @Autowired
-    public PeopleDetailService(PeopleRepository peopleRepository) {
+    public PeopleDetailService(PeopleRepository peopleRepository, ChangeLog changeLog) {
         this.peopleRepository = peopleRepository;
+        this.changeLog = changeLog;
     }
 
+    // Снимок пользователя кэшируется до изменения или удаления его учётной записи
     @Override
+    @Cacheable(CacheConfig.USERS)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         Optional<Person> person = peopleRepository.findPersonByUsername(username);
         if(person.isEmpty())
@@ -29,4 +43,16 @@ public class PeopleDetailService implements UserDetailsService {
 
         return new PersonDetails(person.get());
     }
+
+    // Вызывается Spring Security после успешного входа, если хеш пароля устарел
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#user.username")
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        PersonDetails personDetails = (PersonDetails) user;
+        peopleRepository.updatePassword(personDetails.getId(), newPassword);
+        changeLog.recordPerson(personDetails.getId());
+        return new PersonDetails(personDetails.getId(), personDetails.getUsername(), newPassword,
+                personDetails.getRole());
+    }
 }
@@ -1,34 +1,95 @@
 package practice.library.services;
 
-import org.hibernate.Hibernate;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import practice.library.audit.AuditLog;
+import practice.library.cluster.ChangeLog;
+import practice.library.config.CacheConfig;
+import practice.library.config.MetricsConfig;
+import practice.library.models.AuditEventType;
 import practice.library.models.Book;
 import practice.library.models.Person;
+import practice.library.projections.LoanView;
+import practice.library.projections.PersonView;
+import practice.library.repositories.BooksRepository;
 import practice.library.repositories.PeopleRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.PeoplePrefixIndex;
+import practice.library.search.PeopleSearchIndex;
+import practice.library.search.SearchIndex;
 import practice.library.security.PersonDetails;
+import practice.library.util.Cursor;
+import practice.library.util.KeysetPage;
+import practice.library.util.OverduePolicy;
+import practice.library.util.Pages;
+import practice.library.util.PasswordHashingUnavailableException;
+import practice.library.util.SearchPage;
+import practice.library.views.ViewVersions;
 
 import java.util.*;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Transactional(readOnly = true)
 public class PeopleService {
 
     private final PeopleRepository peopleRepository;
 
+    private final BooksRepository booksRepository;
+
     private final PasswordEncoder passwordEncoder;
 
+    private final PeopleSearchIndex peopleSearchIndex;
+
+    private final PeoplePrefixIndex peoplePrefixIndex;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ViewVersions viewVersions;
+
+    private final OverduePolicy overduePolicy;
+
+    private final AuditLog auditLog;
+
+    private final ChangeLog changeLog;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
     @Autowired
-    public PeopleService(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder) {
+    public PeopleService(PeopleRepository peopleRepository, BooksRepository booksRepository,
+                         PasswordEncoder passwordEncoder, PeopleSearchIndex peopleSearchIndex,
+                         PeoplePrefixIndex peoplePrefixIndex, AvailabilityIndex availabilityIndex,
+                         ViewVersions viewVersions, OverduePolicy overduePolicy, AuditLog auditLog,
+                         ChangeLog changeLog,
+                         @Value("${library.page.default-size}") int defaultPageSize,
+                         @Value("${library.page.max-size}") int maxPageSize) {
         this.peopleRepository = peopleRepository;
+        this.booksRepository = booksRepository;
         this.passwordEncoder = passwordEncoder;
+        this.peopleSearchIndex = peopleSearchIndex;
+        this.peoplePrefixIndex = peoplePrefixIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.viewVersions = viewVersions;
+        this.overduePolicy = overduePolicy;
+        this.auditLog = auditLog;
+        this.changeLog = changeLog;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -36,75 +97,160 @@ public class PeopleService {
         return peopleRepository.findAll();
     }
 
+    // Без параметров пагинации отдаём первую страницу, а не всю таблицу. У перегрузок index общий кэш страниц,
+    // поэтому ключ каждой начинается со своего префикса
+    @Cacheable(cacheNames = CacheConfig.PEOPLE_PAGES, key = "'first:' + #sorted")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public List<Person> index(boolean sorted) {
-        if (sorted) {
-            return peopleRepository.findAll(Sort.by("dateOfBirth"));
-        }
-        else {
-            return peopleRepository.findAll();
-        }
+    public List<PersonView> index(boolean sorted) {
+        return index(0, defaultPageSize, sorted);
     }
 
+    @Cacheable(cacheNames = CacheConfig.PEOPLE_PAGES,
+            key = "'offset:' + #page + ':' + #peoplePerPage + ':' + #sorted")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public List<Person> index(Integer page, Integer peoplePerPage, boolean sorted) {
+    public List<PersonView> index(Integer page, Integer peoplePerPage, boolean sorted) {
+        page = Pages.checkNumber(page);
+        peoplePerPage = pageSize(peoplePerPage);
         if(sorted) {
-            return peopleRepository.findAll(PageRequest.of(page, peoplePerPage,
-                    Sort.by("dateOfBirth"))).getContent();
-        } else return peopleRepository.findAll(PageRequest.of(page, peoplePerPage)).getContent();
+            return peopleRepository.findViews(PageRequest.of(page, peoplePerPage,
+                    Sort.by("dateOfBirth")));
+        } else return peopleRepository.findViews(PageRequest.of(page, peoplePerPage));
+    }
+
+    // Постраничный вывод по курсору (dateOfBirth, id) без OFFSET
+    @Cacheable(cacheNames = CacheConfig.PEOPLE_PAGES, key = "'cursor:' + #cursor + ':' + #peoplePerPage")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public KeysetPage<PersonView> index(String cursor, Integer peoplePerPage) {
+        int size = pageSize(peoplePerPage);
+        Cursor after = Cursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<PersonView> people;
+        if (after == null)
+            people = peopleRepository.findFirstPage(limit);
+        else if (after.key() == null)
+            people = peopleRepository.findUndatedPageAfter(after.id(), limit);
+        else
+            people = peopleRepository.findPageAfter(new Date(after.key()), after.id(), limit);
+
+        if (people.size() <= size)
+            return new KeysetPage<>(people, null);
+
+        PersonView last = people.get(size - 1);
+        Long key = last.getDateOfBirth() == null ? null : last.getDateOfBirth().getTime();
+        return new KeysetPage<>(people.subList(0, size), new Cursor(key, last.getId()).encode());
     }
 
-    @PreAuthorize("(principal.getPerson().getId == #id) or (hasRole('ROLE_ADMIN'))")
+    // Сущность для формы редактирования; страница читателя и API читают кэшируемую проекцию
+    @PreAuthorize("(principal.id == #id) or (hasRole('ROLE_ADMIN'))")
     public Person show(long id) {
         Optional<Person> foundPerson = peopleRepository.findById(id);
         return foundPerson.orElse(null);
     }
 
+    @Cacheable(CacheConfig.PEOPLE)
+    @PreAuthorize("(principal.id == #id) or (hasRole('ROLE_ADMIN'))")
+    public PersonView profile(long id) {
+        return peopleRepository.findViewById(id).orElse(null);
+    }
+
     public Optional<Person> loadUserByUsername(String username) {
         return peopleRepository.findPersonByUsername(username);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_SEARCH, allEntries = true)
+    })
     @Transactional
     public void save(Person person) {
-        peopleRepository.save(person);
+        Person saved = peopleRepository.save(person);
+        peopleSearchIndex.putAfterCommit(PeopleSearchIndex.document(saved));
+        peoplePrefixIndex.putAfterCommit(PeoplePrefixIndex.document(saved));
+        viewVersions.touchPeopleAfterCommit();
+        changeLog.recordPerson(saved.getId());
     }
 
+    // Карточки книг показывают имя владельца, а прежний логин по id не известен, поэтому сбрасываются целиком
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_SEARCH, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    })
     @Transactional
     public void update(long id, Person updatedPerson) {
         updatedPerson.setId(id);
         updatedPerson.setRole("ROLE_USER");
-        updatedPerson.setPassword(passwordEncoder.encode(updatedPerson.getPassword()));
-        peopleRepository.save(updatedPerson);
+        updatedPerson.setPassword(passwordHash(id, updatedPerson.getPassword()));
+        Person saved = peopleRepository.save(updatedPerson);
+        peopleSearchIndex.putAfterCommit(PeopleSearchIndex.document(saved));
+        peoplePrefixIndex.putAfterCommit(PeoplePrefixIndex.document(saved));
+        viewVersions.touchPeopleAfterCommit();
+        changeLog.recordPerson(id);
     }
 
+    // Карточки книг показывают имя владельца, а прежний логин по id не известен, поэтому сбрасываются целиком
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_SEARCH, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_SEARCH, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    })
     @Transactional
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void delete(long id) {
+        // Книги освобождаются явно, а не через on delete set null: каждый возврат попадает в журнал
+        for (Book book : booksRepository.findForUpdateByOwnerId(id)) {
+            book.setOwner(null);
+            book.setTakenAt(null);
+            auditLog.recordAfterCommit(AuditEventType.BOOK_FREED, book.getId(), id, null);
+            viewVersions.touchBookAfterCommit(book.getId());
+            changeLog.recordBook(book.getId());
+        }
         peopleRepository.deleteById(id);
+        peopleSearchIndex.removeAfterCommit(id);
+        peoplePrefixIndex.removeAfterCommit(id);
+        availabilityIndex.releaseAfterCommit(id);
+        changeLog.recordPerson(id);
+        // Книги удалённого читателя освобождаются, это меняет и каталог
+        viewVersions.touchPeopleAfterCommit();
+        viewVersions.touchCatalogAfterCommit();
     }
 
-    @PreAuthorize("principal.getPerson().getId == #id")
-    public List<Book> getBooks(long id) {
-        Optional<Person> personOptional = peopleRepository.findById(id);
-
-        if (personOptional.isPresent()) {
-            Hibernate.initialize(personOptional.get().getBooks());
-            for (Book book : personOptional.get().getBooks()) {
-                final long convert = 24*60*60*1000;
-                if ((new Date().getTime() - book.getTakenAt().getTime())/convert >= 10) {
-                    book.setOverdue(true);
-                } else {
-                    book.setOverdue(false);
-                }
-            }
-            return personOptional.get().getBooks();
-        }
-        else
-            return Collections.emptyList();
+    // Книги читателя с признаком просрочки одним запросом, без загрузки Person и его коллекции
+    @PreAuthorize("principal.id == #id")
+    public List<LoanView> getBooks(long id) {
+        return booksRepository.findLoans(id, overduePolicy.overdueSince());
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public List<PersonView> search(String contain) {
+        return search(contain, 0, defaultPageSize).content();
+    }
+
+    // Поиск по ФИО через индекс триграмм, из базы читается только найденная страница
+    @Cacheable(CacheConfig.PEOPLE_SEARCH)
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public SearchPage<PersonView> search(String contain, int page, Integer peoplePerPage) {
+        int size = pageSize(peoplePerPage);
+        return views(SearchPage.of(peopleSearchIndex.searchWithNext(contain, Pages.checkNumber(page), size), size));
     }
+
+    // Подсказки для формы выдачи: по началу слов имени или логина, без кэша — запросы почти не повторяются
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public List<Person> search(String contain) {
-        return peopleRepository.findPersonByNameContainingIgnoreCase(contain);
+    public SearchPage<PersonView> lookup(String prefix, int page, Integer peoplePerPage) {
+        int size = pageSize(peoplePerPage);
+        return views(SearchPage.of(peoplePrefixIndex.searchWithNext(prefix, Pages.checkNumber(page), size), size));
+    }
+
+    // Число книг на руках для значков в списке читателей; считается в памяти, без запроса к базе
+    public Map<Long, Integer> loanCounts(List<PersonView> people) {
+        return availabilityIndex.loans(people.stream().map(PersonView::getId).toList());
     }
 
     public PersonDetails getPersonDetails() {
@@ -112,4 +258,30 @@ public class PeopleService {
         PersonDetails personDetails = (PersonDetails) auth.getPrincipal();
         return personDetails;
     }
-}
\ No newline at end of file
+
+    // Форма редактирования возвращает прежний хеш или пустое поле, если пароль не меняли - BCrypt тогда не нужен
+    private String passwordHash(long id, String submitted) {
+        String current = peopleRepository.findById(id).map(Person::getPassword).orElse(null);
+        if (submitted == null || submitted.isEmpty() || submitted.equals(current))
+            return current;
+        try {
+            return passwordEncoder.encode(submitted);
+        } catch (AuthenticationServiceException e) {
+            throw new PasswordHashingUnavailableException(e.getMessage(), e);
+        }
+    }
+
+    private int pageSize(Integer peoplePerPage) {
+        if (peoplePerPage == null || peoplePerPage <= 0)
+            return defaultPageSize;
+        return Math.min(peoplePerPage, maxPageSize);
+    }
+
+    // Найденные идентификаторы превращаются в проекции одним запросом, порядок выдачи индекса сохраняется
+    private SearchPage<PersonView> views(SearchPage<Long> ids) {
+        if (ids.content().isEmpty())
+            return new SearchPage<>(Collections.emptyList(), false);
+        List<PersonView> people = peopleRepository.findViewsByIdIn(ids.content());
+        return new SearchPage<>(SearchIndex.inRankOrder(ids.content(), people, PersonView::getId), ids.hasNext());
+    }
+}
@@ -1,29 +1,68 @@
 package practice.library.services;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import practice.library.cluster.ChangeLog;
+import practice.library.config.CacheConfig;
+import practice.library.config.MetricsConfig;
 import practice.library.models.Person;
 import practice.library.repositories.PeopleRepository;
+import practice.library.search.PeoplePrefixIndex;
+import practice.library.search.PeopleSearchIndex;
+import practice.library.util.PasswordHashingUnavailableException;
+import practice.library.views.ViewVersions;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 public class RegistrationService {
 
     private final PeopleRepository peopleRepository;
 
     private final PasswordEncoder passwordEncoder;
 
+    private final PeopleSearchIndex peopleSearchIndex;
+
+    private final PeoplePrefixIndex peoplePrefixIndex;
+
+    private final ViewVersions viewVersions;
+
+    private final ChangeLog changeLog;
+
     @Autowired
-    public RegistrationService(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder) {
+    public RegistrationService(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder,
+                               PeopleSearchIndex peopleSearchIndex, PeoplePrefixIndex peoplePrefixIndex,
+                               ViewVersions viewVersions, ChangeLog changeLog) {
         this.peopleRepository = peopleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.peopleSearchIndex = peopleSearchIndex;
+        this.peoplePrefixIndex = peoplePrefixIndex;
+        this.viewVersions = viewVersions;
+        this.changeLog = changeLog;
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_PAGES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.PEOPLE_SEARCH, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#person.username")
+    })
     @Transactional
     public void register(Person person) {
-        person.setPassword(passwordEncoder.encode(person.getPassword()));
+        try {
+            person.setPassword(passwordEncoder.encode(person.getPassword()));
+        } catch (AuthenticationServiceException e) {
+            throw new PasswordHashingUnavailableException(e.getMessage(), e);
+        }
         person.setRole("ROLE_USER");
-        peopleRepository.save(person);
+        Person saved = peopleRepository.save(person);
+        peopleSearchIndex.putAfterCommit(PeopleSearchIndex.document(saved));
+        peoplePrefixIndex.putAfterCommit(PeoplePrefixIndex.document(saved));
+        viewVersions.touchPeopleAfterCommit();
+        changeLog.recordPerson(saved.getId());
     }
 }
@@ -0,0 +1,5 @@
+package practice.library.util;
+
+// Сколько книг в каталоге, из них свободно и на руках; считается по индексу доступности
+public record Availability(long books, long available, long onLoan) {
+}
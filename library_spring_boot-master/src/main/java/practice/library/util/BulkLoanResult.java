@@ -0,0 +1,7 @@
+package practice.library.util;
+
+import java.util.List;
+
+// Итог массовой выдачи или возврата: обработанные книги и книги, которые уже были выданы (свободны) или не найдены
+public record BulkLoanResult(List<Long> done, List<Long> conflicts) {
+}
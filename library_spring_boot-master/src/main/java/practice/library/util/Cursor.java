@@ -0,0 +1,41 @@
+package practice.library.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Непрозрачный курсор вида base64("ключ:id") для постраничного вывода по (ключ сортировки, id)
+public record Cursor(Long key, long id) {
+
+    private static final String NULL_KEY = "-";
+
+    public String encode() {
+        String raw = (key == null ? NULL_KEY : key.toString()) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Ключ для списков, где он не бывает пустым: курсор вида "-:id" в них можно только подделать
+    public long requiredKey() {
+        if (key == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор страницы");
+        return key;
+    }
+
+    // Пустой курсор означает первую страницу
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank())
+            return null;
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            String key = raw.substring(0, separator);
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new Cursor(NULL_KEY.equals(key) ? null : Long.valueOf(key), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор страницы");
+        }
+    }
+}
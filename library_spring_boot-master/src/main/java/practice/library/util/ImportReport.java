@@ -0,0 +1,11 @@
+package practice.library.util;
+
+import java.util.List;
+
+// Итог импорта: сколько строк сохранено, сколько отклонено и причины (не больше library.import.max-errors)
+public record ImportReport(int imported, int rejected, List<RowError> errors) {
+
+    // Номер строки считается с 1 без учёта заголовка CSV
+    public record RowError(int row, String message) {
+    }
+}
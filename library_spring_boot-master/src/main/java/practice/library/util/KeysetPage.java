@@ -0,0 +1,11 @@
+package practice.library.util;
+
+import java.util.List;
+
+// Страница для постраничного вывода по курсору: содержимое и курсор следующей страницы (null, если дальше пусто)
+public record KeysetPage<T>(List<T> content, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
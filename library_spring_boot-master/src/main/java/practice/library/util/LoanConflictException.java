@@ -0,0 +1,13 @@
+package practice.library.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Книгу уже выдали (или уже вернули) в параллельном запросе
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LoanConflictException extends RuntimeException {
+
+    public LoanConflictException(String message) {
+        super(message);
+    }
+}
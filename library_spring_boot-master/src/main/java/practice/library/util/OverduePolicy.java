@@ -0,0 +1,23 @@
+package practice.library.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Книга просрочена, если взята не позже, чем library.loans.overdue-days дней назад
+@Component
+public class OverduePolicy {
+
+    private final long overdueMillis;
+
+    public OverduePolicy(@Value("${library.loans.overdue-days}") int overdueDays) {
+        this.overdueMillis = TimeUnit.DAYS.toMillis(overdueDays);
+    }
+
+    // Граница, с которой сравнивается taken_at в запросах
+    public Date overdueSince() {
+        return new Date(System.currentTimeMillis() - overdueMillis);
+    }
+}
@@ -0,0 +1,17 @@
+package practice.library.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// Номер страницы из запроса: отрицательный — ошибка клиента (400), а не исключение PageRequest и ответ 500
+public final class Pages {
+
+    private Pages() {
+    }
+
+    public static int checkNumber(int page) {
+        if (page < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Номер страницы не может быть отрицательным");
+        return page;
+    }
+}
@@ -0,0 +1,14 @@
+package practice.library.util;
+
+import java.util.List;
+
+// Страница результатов поиска по номеру: содержимое и признак того, что за ней есть ещё результаты
+public record SearchPage<T>(List<T> content, boolean hasNext) {
+
+    // Из списка с одной лишней записью сверх size: лишняя запись только сообщает о следующей странице
+    public static <T> SearchPage<T> of(List<T> found, int size) {
+        if (found.size() <= size)
+            return new SearchPage<>(found, false);
+        return new SearchPage<>(List.copyOf(found.subList(0, size)), true);
+    }
+}
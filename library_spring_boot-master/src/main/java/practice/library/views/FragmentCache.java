@@ -0,0 +1,120 @@
+package practice.library.views;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+import practice.library.config.CacheConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Кэш отрисованных фрагментов страниц. Во фрагменты попадают только данные, без форм: формы несут
+// CSRF-токен сессии и отрисовываются в самой странице при каждом запросе
+@Component
+public class FragmentCache implements MeterBinder {
+
+    private final ITemplateEngine templateEngine;
+
+    private final CacheManager cacheManager;
+
+    private final ViewVersions viewVersions;
+
+    private volatile Counter savedByCache;
+
+    private volatile Counter savedByNotModified;
+
+    private volatile Counter notModified;
+
+    @Autowired
+    public FragmentCache(ITemplateEngine templateEngine, CacheManager cacheManager, ViewVersions viewVersions) {
+        this.templateEngine = templateEngine;
+        this.cacheManager = cacheManager;
+        this.viewVersions = viewVersions;
+    }
+
+    // variables вызывается только при промахе, так что и данные для фрагмента читаются только тогда
+    public String render(ViewKey key, HttpServletRequest request, HttpServletResponse response,
+                         Supplier<Map<String, Object>> variables) {
+        boolean[] rendered = {false};
+        ViewFragment fragment;
+        try {
+            fragment = cache().get(key, () -> {
+                rendered[0] = true;
+                JakartaServletWebApplication application =
+                        JakartaServletWebApplication.buildApplication(request.getServletContext());
+                WebContext context = new WebContext(application.buildExchange(request, response),
+                        request.getLocale(), variables.get());
+                return ViewFragment.of(templateEngine.process(key.template(), context));
+            });
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+
+        if (!rendered[0])
+            increment(savedByCache, fragment.bytes());
+        return fragment.html();
+    }
+
+    // Проставляет ETag, Last-Modified и Cache-Control; true, если у браузера актуальная копия и хватит 304.
+    // В ETag входит сессия: страница содержит её CSRF-токен, и после входа под другим пользователем
+    // браузер должен получить страницу заново
+    public boolean notModified(ViewKey key, long lastModified, HttpServletRequest request,
+                               HttpServletResponse response) {
+        HttpSession session = request.getSession(false);
+        String tag = key + "|" + viewVersions.epoch() + "|" + (session == null ? "" : session.getId());
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(tag.getBytes(StandardCharsets.UTF_8)) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        if (!new ServletWebRequest(request, response).checkNotModified(etag, lastModified))
+            return false;
+
+        increment(notModified, 1);
+        ViewFragment cached = cache().get(key, ViewFragment.class);
+        if (cached != null)
+            increment(savedByNotModified, cached.bytes());
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        savedByCache = Counter.builder("library.views.bytes.saved")
+                .tag("reason", "cached")
+                .baseUnit("bytes")
+                .description("Fragment bytes served without rendering")
+                .register(registry);
+        savedByNotModified = Counter.builder("library.views.bytes.saved")
+                .tag("reason", "not_modified")
+                .baseUnit("bytes")
+                .description("Fragment bytes served without rendering")
+                .register(registry);
+        notModified = Counter.builder("library.views.not.modified")
+                .description("Page requests answered with 304 Not Modified")
+                .register(registry);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.VIEWS);
+    }
+
+    private static void increment(Counter counter, double amount) {
+        if (counter != null)
+            counter.increment(amount);
+    }
+}
@@ -0,0 +1,11 @@
+package practice.library.views;
+
+import java.nio.charset.StandardCharsets;
+
+// Отрисованный HTML и его размер в байтах: по размеру ограничивается кэш и считается экономия
+public record ViewFragment(String html, int bytes) {
+
+    public static ViewFragment of(String html) {
+        return new ViewFragment(html, html.getBytes(StandardCharsets.UTF_8).length);
+    }
+}
@@ -0,0 +1,6 @@
+package practice.library.views;
+
+// Ключ отрисованного фрагмента: шаблон, роль (от неё зависят разделы isAdmin/isUser),
+// параметры запроса и версия данных
+public record ViewKey(String template, String role, String params, long version) {
+}
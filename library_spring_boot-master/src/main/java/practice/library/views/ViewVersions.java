@@ -0,0 +1,112 @@
+package practice.library.views;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Версии данных, из которых собираются страницы: каталог целиком, список людей и каждая книга отдельно.
+// Версия меняется после фиксации изменения и входит в ключ кэша фрагментов и в ETag страницы
+@Component
+public class ViewVersions {
+
+    // Отличает запуски приложения: после перезапуска счётчик версий начинается заново
+    private final long epoch = System.currentTimeMillis();
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private final Stamp initial = new Stamp(0, epoch);
+
+    private final AtomicReference<Stamp> catalog = new AtomicReference<>(initial);
+
+    private final AtomicReference<Stamp> people = new AtomicReference<>(initial);
+
+    // Записи есть только у изменённых книг и убираются при удалении книги, так что их не больше, чем книг в каталоге
+    private final Map<Long, Stamp> books = new ConcurrentHashMap<>();
+
+    // Нижняя граница версии книги: после полной перезагрузки версии всех книг новее прежних
+    private final AtomicReference<Stamp> floor = new AtomicReference<>(initial);
+
+    public Stamp catalog() {
+        return catalog.get();
+    }
+
+    public Stamp people() {
+        return people.get();
+    }
+
+    public Stamp book(long id) {
+        Stamp stamp = books.get(id);
+        return stamp == null ? floor.get() : stamp.latest(floor.get());
+    }
+
+    public String epoch() {
+        return Long.toString(epoch, 36);
+    }
+
+    // Выдача, возврат и правка книги меняют и её карточку, и списки каталога
+    public void touchBookAfterCommit(long id) {
+        afterCommitted(() -> {
+            Stamp stamp = next();
+            books.put(id, stamp);
+            catalog.set(stamp);
+        });
+    }
+
+    // У удалённой книги нет страницы (404 раньше фрагмента), и id не выдаются повторно, поэтому её версия не нужна
+    public void removeBookAfterCommit(long id) {
+        afterCommitted(() -> {
+            books.remove(id);
+            catalog.set(next());
+        });
+    }
+
+    public void touchCatalogAfterCommit() {
+        afterCommitted(() -> catalog.set(next()));
+    }
+
+    public void touchPeopleAfterCommit() {
+        afterCommitted(() -> people.set(next()));
+    }
+
+    // Меняет все версии сразу, когда узел перечитал данные целиком
+    public void touchAll() {
+        Stamp stamp = next();
+        floor.set(stamp);
+        books.clear();
+        catalog.set(stamp);
+        people.set(stamp);
+    }
+
+    private Stamp next() {
+        return new Stamp(counter.incrementAndGet(), System.currentTimeMillis());
+    }
+
+    // Версия меняется уже после всех afterCommit, в том числе после сброса кэшей данных из @CacheEvict:
+    // иначе промах по новому ключу успел бы отрисовать фрагмент из ещё не сброшенного кэша
+    private static void afterCommitted(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED)
+                    action.run();
+            }
+        });
+    }
+
+    // Версии берутся из одного счётчика, поэтому у страницы из нескольких источников версия — самая свежая из них
+    public record Stamp(long version, long lastModified) {
+
+        public Stamp latest(Stamp other) {
+            return version >= other.version ? this : other;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+-- Исходная схема: таблицы читателей и книг.
+-- if not exists — чтобы миграции применялись и к базе, созданной вручную до появления Flyway
+create table if not exists Person (
+    id            int generated by default as identity primary key,
+    name          varchar(100) not null,
+    username      varchar(100) not null,
+    date_of_birth date,
+    password      varchar(255),
+    role          varchar(255)
+);
+
+create table if not exists Book (
+    id           int generated by default as identity primary key,
+    title        varchar(50) not null,
+    author       varchar(50) not null,
+    year_of_prod int,
+    owner_id     int references Person (id) on delete set null
+);
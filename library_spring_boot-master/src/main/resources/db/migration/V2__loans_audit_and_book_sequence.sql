@@ -0,0 +1,11 @@
+-- Колонки выдачи и аудита, 64-битные ключи как в сущностях и последовательность для пакетной вставки книг
+alter table Person alter column id set data type bigint;
+alter table Book alter column id set data type bigint;
+alter table Book alter column owner_id set data type bigint;
+
+alter table Book add column if not exists taken_at timestamp;
+alter table Book add column if not exists updated_at timestamp;
+alter table Book add column if not exists updated_by varchar(255);
+
+-- Id книг выдаёт book_seq блоками по 50 (allocationSize в Book); identity-колонка "by default" явные id принимает
+create sequence if not exists book_seq start with 1 increment by 50;
@@ -0,0 +1,13 @@
+-- Вход ищет читателя по username: уникальный индекс и ускоряет поиск, и запрещает дубликаты
+create unique index if not exists person_username_uidx on Person (username);
+
+-- Постраничный вывод по (год издания, id) и по (дата рождения, id), в том числе по ключу
+create index if not exists book_year_of_prod_id_idx on Book (year_of_prod, id);
+create index if not exists person_date_of_birth_id_idx on Person (date_of_birth, id);
+
+-- Сортировка каталога по названию
+create index if not exists book_title_idx on Book (title);
+
+-- Книги читателя (Person.books, выдачи) и просроченные выдачи
+create index if not exists book_owner_taken_at_idx on Book (owner_id, taken_at);
+create index if not exists book_taken_at_idx on Book (taken_at);
@@ -0,0 +1,15 @@
+-- Журнал изменений каталога и выдач: только добавление, без внешних ключей, чтобы история
+-- переживала удаление книги или читателя
+create table if not exists audit_event (
+    id          bigint generated by default as identity primary key,
+    occurred_at timestamp    not null,
+    type        varchar(32)  not null,
+    book_id     bigint,
+    person_id   bigint,
+    actor       varchar(100),
+    details     varchar(1000)
+);
+
+create index if not exists audit_event_book_id_idx on audit_event (book_id, id);
+create index if not exists audit_event_person_id_idx on audit_event (person_id, id);
+create index if not exists audit_event_occurred_at_idx on audit_event (occurred_at);
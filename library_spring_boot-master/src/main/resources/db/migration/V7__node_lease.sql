@@ -0,0 +1,9 @@
+-- Аренда единственного рабочего узла: кэши, индексы в памяти и ограничитель входов живут внутри узла,
+-- поэтому второй экземпляр не должен обслуживать запросы рядом с первым
+create table if not exists node_lease (
+    id           int          primary key,
+    node         varchar(200),
+    heartbeat_at timestamp    not null
+);
+
+insert into node_lease (id, node, heartbeat_at) values (1, null, timestamp '1970-01-01 00:00:00');
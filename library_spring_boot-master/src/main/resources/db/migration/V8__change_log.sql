@@ -0,0 +1,14 @@
+-- Аренда единственного узла (V7) больше не нужна: узлы согласуют кэши и индексы через change_log
+drop table if exists node_lease;
+
+-- Изменения данных для остальных узлов: строка пишется в той же транзакции, что и изменение, узлы читают
+-- новые строки по возрастанию id и перечитывают из базы изменённые книги и читателей
+create table if not exists change_log (
+    id         bigint      generated by default as identity primary key,
+    node       varchar(64) not null,
+    kind       varchar(16) not null,
+    entity_id  bigint      not null,
+    created_at timestamp   not null default current_timestamp
+);
+
+create index if not exists change_log_created_at_idx on change_log (created_at);
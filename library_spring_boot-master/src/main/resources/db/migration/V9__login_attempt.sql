@@ -0,0 +1,11 @@
+-- Попытки входа, общие для всех узлов: счётчик ключа (имя с адресом или адрес) за интервал скользящего окна.
+-- window_start — начало интервала в миллисекундах по часам базы
+create table if not exists login_attempt (
+    scope        varchar(16)  not null,
+    attempt_key  varchar(200) not null,
+    window_start bigint       not null,
+    attempts     int          not null,
+    constraint login_attempt_pk primary key (scope, attempt_key, window_start)
+);
+
+create index if not exists login_attempt_window_start_idx on login_attempt (window_start);
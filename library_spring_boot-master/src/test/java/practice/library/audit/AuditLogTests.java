@@ -0,0 +1,172 @@
+package practice.library.audit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.models.AuditEventType;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.security.PersonDetails;
+import practice.library.services.BookService;
+import practice.library.services.PeopleService;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(username = "librarian", roles = "ADMIN")
+class AuditLogTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AuditLog auditLog;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private PeopleService peopleService;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		auditLog.flush();
+		jdbcTemplate.update("delete from audit_event where book_id < 0 or actor = 'librarian'");
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+	}
+
+	@Test
+	void catalogAndLoanChangesArePagedPerBookAndPerPerson() throws Exception {
+		// Правка книги записывает имя библиотекаря из PersonDetails
+		Person librarian = new Person("Библиотекарь", "librarian", new Date());
+		librarian.setRole("ROLE_ADMIN");
+		PersonDetails details = new PersonDetails(peopleRepository.save(librarian));
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+
+		Person reader = peopleRepository.save(new Person("Читатель", "reader", new Date()));
+		Book book = new Book("Журнал", "Автор", 2000);
+		bookService.save(book);
+		bookService.update(book.getId(), new Book("Журнал, 2-е изд.", "Автор", 2001));
+		bookService.takeBook(book.getId(), reader);
+		bookService.freeBook(book.getId());
+		auditLog.flush();
+
+		mockMvc.perform(get("/api/v1/audit/books/{id}", book.getId()).param("size", "3"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[*].type", contains("BOOK_FREED", "BOOK_TAKEN", "BOOK_UPDATED")))
+				.andExpect(jsonPath("$.content[0].personId").value(reader.getId()))
+				.andExpect(jsonPath("$.content[0].actor").value("librarian"))
+				.andExpect(jsonPath("$.content[2].details").value("title=Журнал, 2-е изд., author=Автор, yearOfProd=2001"))
+				.andExpect(jsonPath("$.next").isNotEmpty());
+
+		mockMvc.perform(get("/api/v1/audit/people/{id}", reader.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[*].type", contains("BOOK_FREED", "BOOK_TAKEN")))
+				.andExpect(jsonPath("$.next").doesNotExist());
+	}
+
+	@Test
+	@WithMockUser
+	void auditIsForAdminsOnly() throws Exception {
+		mockMvc.perform(get("/api/v1/audit/books/{id}", 1))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	void deletingReaderAuditsReturnOfTheirBooks() {
+		Person reader = peopleRepository.save(new Person("Читатель", "reader", new Date()));
+		Book first = booksRepository.save(new Book("Первая", "Автор", 2000));
+		Book second = booksRepository.save(new Book("Вторая", "Автор", 2001));
+		bookService.takeBook(first.getId(), reader);
+		bookService.takeBook(second.getId(), reader);
+
+		peopleService.delete(reader.getId());
+		auditLog.flush();
+
+		assertThat(booksRepository.findAll()).allSatisfy(book -> assertThat(book.getTakenAt()).isNull());
+		assertThat(jdbcTemplate.queryForList("select concat(book_id, ':', person_id) from audit_event " +
+						"where type = 'BOOK_FREED' and actor = 'librarian' order by book_id", String.class))
+				.containsExactly(first.getId() + ":" + reader.getId(), second.getId() + ":" + reader.getId());
+	}
+
+	@Test
+	void rolledBackChangesAreNotAudited() {
+		transactionTemplate.executeWithoutResult(status -> {
+			bookService.save(new Book("Откат", "Автор", 2000));
+			status.setRollbackOnly();
+		});
+		auditLog.flush();
+
+		assertThat(jdbcTemplate.queryForObject("select count(*) from audit_event where details like 'title=Откат%'",
+				Integer.class)).isZero();
+	}
+
+	@Test
+	void purgeDropsExpiredEventsAndCompactsOldEdits() {
+		Instant now = Instant.now();
+		insert(now.minus(Duration.ofDays(800)), AuditEventType.BOOK_TAKEN, -101L);
+		insert(now.minus(Duration.ofDays(100)), AuditEventType.BOOK_UPDATED, -101L);
+		insert(now.minus(Duration.ofDays(90)), AuditEventType.BOOK_UPDATED, -101L);
+		insert(now.minus(Duration.ofDays(80)), AuditEventType.BOOK_TAKEN, -101L);
+		insert(now.minus(Duration.ofDays(1)), AuditEventType.BOOK_UPDATED, -101L);
+		insert(now.minus(Duration.ofDays(100)), AuditEventType.BOOK_UPDATED, -102L);
+
+		assertThat(auditLog.purge(Duration.ofDays(730), Duration.ofDays(30))).isEqualTo(3);
+
+		List<String> left = jdbcTemplate.queryForList(
+				"select concat(book_id, ':', type) from audit_event where book_id < 0 order by id", String.class);
+		assertThat(left).containsExactly("-101:BOOK_TAKEN", "-101:BOOK_UPDATED", "-102:BOOK_UPDATED");
+	}
+
+	@Test
+	void fullQueueDropsEventsInsteadOfBlocking() {
+		try (AuditLog small = new AuditLog(jdbcTemplate, 2, 100, 60_000)) {
+			for (int i = 0; i < 5; i++)
+				small.recordAfterCommit(AuditEventType.BOOK_DELETED, -1L - i, null, null);
+
+			assertThat(small.pending()).isEqualTo(2);
+		}
+		assertThat(jdbcTemplate.queryForObject("select count(*) from audit_event where book_id < 0", Integer.class))
+				.isEqualTo(2);
+	}
+
+	private void insert(Instant occurredAt, AuditEventType type, long bookId) {
+		jdbcTemplate.update("insert into audit_event (occurred_at, type, book_id) values (?, ?, ?)",
+				Timestamp.from(occurredAt), type.name(), bookId);
+	}
+}
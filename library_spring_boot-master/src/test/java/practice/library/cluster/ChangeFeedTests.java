@@ -0,0 +1,217 @@
+package practice.library.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.projections.BookCardView;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.search.BooksSearchIndex;
+import practice.library.search.PeopleSearchIndex;
+import practice.library.services.BookService;
+import practice.library.views.ViewVersions;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Второй узел изображается строками change_log с чужим именем узла и правкой базы в обход сервисов
+@SpringBootTest
+class ChangeFeedTests {
+
+	private static final String INSERT = "insert into change_log (node, kind, entity_id) values (?, ?, ?)";
+
+	@Autowired
+	private ChangeFeed changeFeed;
+
+	@Autowired
+	private ChangeLog changeLog;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private BooksSearchIndex booksSearchIndex;
+
+	@Autowired
+	private PeopleSearchIndex peopleSearchIndex;
+
+	@Autowired
+	private AvailabilityIndex availabilityIndex;
+
+	@Autowired
+	private ViewVersions viewVersions;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@AfterEach
+	void cleanUp() {
+		executor.shutdownNow();
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+		drain();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void bookChangedOnAnotherNodeIsReloadedFromTheDatabase() {
+		Book book = new Book("Пикник", "Стругацкие", 1972);
+		bookService.save(book);
+		assertThat(jdbcTemplate.queryForList("select kind from change_log where node = ? and entity_id = ?",
+				String.class, changeLog.node(), book.getId())).containsExactly("BOOK");
+		drain();
+		assertThat(bookService.card(book.getId())).extracting(BookCardView::getTitle).isEqualTo("Пикник");
+		long before = viewVersions.book(book.getId()).version();
+
+		jdbcTemplate.update("update book set title = ? where id = ?", "Пикник на обочине", book.getId());
+		jdbcTemplate.update(INSERT, "other-node", "BOOK", book.getId());
+		drain();
+
+		assertThat(bookService.card(book.getId())).extracting(BookCardView::getTitle).isEqualTo("Пикник на обочине");
+		assertThat(booksSearchIndex.search("обочине", 0, 10)).containsExactly(book.getId());
+		assertThat(viewVersions.book(book.getId()).version()).isGreaterThan(before);
+	}
+
+	@Test
+	void readerDeletedOnAnotherNodeReleasesTheirBooks() {
+		Person reader = new Person("Анна Каренина", "anna", new Date());
+		peopleRepository.save(reader);
+		Book book = new Book("Война и мир", "Толстой", 1869);
+		book.setOwner(reader);
+		book.setTakenAt(new Date());
+		booksRepository.save(book);
+		peopleSearchIndex.put(PeopleSearchIndex.document(reader));
+		availabilityIndex.put(book.getId(), reader.getId());
+
+		jdbcTemplate.update("update book set owner_id = null, taken_at = null where id = ?", book.getId());
+		jdbcTemplate.update("delete from person where id = ?", reader.getId());
+		jdbcTemplate.update(INSERT, "other-node", "BOOK", book.getId());
+		jdbcTemplate.update(INSERT, "other-node", "PERSON", reader.getId());
+		drain();
+
+		assertThat(availabilityIndex.loans(reader.getId())).isZero();
+		assertThat(availabilityIndex.isAvailable(book.getId())).isTrue();
+		assertThat(peopleSearchIndex.search("Каренина", 0, 10)).isEmpty();
+	}
+
+	@Test
+	void changeCommittedAfterALaterOneIsNotLost() throws Exception {
+		Recorder recorder = new Recorder();
+		ChangeFeed feed = feed(recorder);
+		CountDownLatch inserted = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+
+		Future<?> slow = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			jdbcTemplate.update(INSERT, "slow-node", "BOOK", 1);
+			inserted.countDown();
+			try {
+				commit.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		inserted.await();
+		jdbcTemplate.update(INSERT, "fast-node", "BOOK", 2);
+
+		feed.poll();
+		assertThat(recorder.changes).extracting(Change::node).containsExactly("fast-node");
+
+		commit.countDown();
+		slow.get(5, TimeUnit.SECONDS);
+		feed.poll();
+		assertThat(recorder.changes).extracting(Change::node).containsExactly("fast-node", "slow-node");
+	}
+
+	@Test
+	void rolledBackChangeStopsBeingAwaitedAfterTimeout() {
+		Recorder recorder = new Recorder();
+		ChangeFeed feed = feed(recorder);
+		int awaited = feed.gaps();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			jdbcTemplate.update(INSERT, "node", "BOOK", 1);
+			status.setRollbackOnly();
+		});
+		jdbcTemplate.update(INSERT, "node", "BOOK", 2);
+		feed.poll();
+		assertThat(feed.gaps()).isEqualTo(awaited + 1);
+
+		clock.addAndGet(Duration.ofMinutes(5).toNanos() + 1);
+		feed.poll();
+		assertThat(feed.gaps()).isZero();
+		assertThat(recorder.changes).extracting(Change::entityId).containsExactly(2L);
+	}
+
+	@Test
+	void nodeThatStoppedPollingReloadsEverything() {
+		Recorder recorder = new Recorder();
+		ChangeFeed feed = feed(recorder);
+		jdbcTemplate.update(INSERT, "node", "BOOK", 1);
+
+		clock.addAndGet(Duration.ofMinutes(31).toNanos());
+		feed.poll();
+
+		assertThat(recorder.resyncs).isEqualTo(1);
+		assertThat(recorder.changes).isEmpty();
+		feed.poll();
+		assertThat(recorder.resyncs).isEqualTo(1);
+	}
+
+	private ChangeFeed feed(Recorder recorder) {
+		return new ChangeFeed(jdbcTemplate, recorder, 1000, Duration.ofMinutes(5), Duration.ofHours(1), clock::get);
+	}
+
+	private void drain() {
+		while (changeFeed.poll() > 0) {
+			// следующий пакет
+		}
+	}
+
+	private static class Recorder implements ChangeFeed.Listener {
+
+		private final List<Change> changes = new CopyOnWriteArrayList<>();
+
+		private int resyncs;
+
+		@Override
+		public void apply(List<Change> changes) {
+			this.changes.addAll(changes);
+		}
+
+		@Override
+		public void resync() {
+			resyncs++;
+		}
+	}
+}
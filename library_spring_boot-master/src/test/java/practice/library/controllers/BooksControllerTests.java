@@ -0,0 +1,135 @@
+package practice.library.controllers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.security.PersonDetails;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BooksControllerTests {
+
+	private static final int READERS = 32;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	private Book book;
+
+	private final List<Person> readers = new ArrayList<>();
+
+	@BeforeEach
+	void seed() {
+		book = booksRepository.save(new Book("Мастер и Маргарита", "Булгаков", 1967));
+		for (int i = 0; i < READERS; i++)
+			readers.add(peopleRepository.save(new Person("Читатель " + i, "reader" + i, new Date())));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void unknownBookPageIsNotFound() throws Exception {
+		Person admin = readers.get(0);
+		admin.setRole("ROLE_ADMIN");
+		mockMvc.perform(get("/books/{id}", book.getId() + 1000).with(user(new PersonDetails(admin))))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void negativePageNumberIsBadRequest() throws Exception {
+		Person reader = readers.get(0);
+		reader.setRole("ROLE_USER");
+		mockMvc.perform(get("/books").param("page", "-1").param("books_per_page", "3")
+						.with(user(new PersonDetails(reader))))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void concurrentTakesHaveExactlyOneWinner() throws Exception {
+		List<Integer> statuses = race(reader -> patch("/books/{id}/take", book.getId())
+				.param("id", String.valueOf(reader.getId())));
+
+		assertThat(statuses).filteredOn(status -> status == HttpStatus.FOUND.value()).hasSize(1);
+		assertThat(statuses).filteredOn(status -> status == HttpStatus.CONFLICT.value()).hasSize(READERS - 1);
+
+		Person owner = booksRepository.findWithOwnerById(book.getId()).orElseThrow().getOwner();
+		assertThat(owner).isNotNull();
+	}
+
+	@Test
+	void concurrentReturnsHaveExactlyOneWinner() throws Exception {
+		mockMvc.perform(patch("/books/{id}/take", book.getId())
+						.param("id", String.valueOf(readers.get(0).getId()))
+						.with(user("admin").roles("ADMIN")).with(csrf()))
+				.andExpect(status().is3xxRedirection());
+
+		List<Integer> statuses = race(reader -> patch("/books/{id}/free", book.getId()));
+
+		assertThat(statuses).filteredOn(status -> status == HttpStatus.FOUND.value()).hasSize(1);
+		assertThat(statuses).filteredOn(status -> status == HttpStatus.CONFLICT.value()).hasSize(READERS - 1);
+		assertThat(booksRepository.findWithOwnerById(book.getId()).orElseThrow().getOwner()).isNull();
+	}
+
+	// Все запросы стартуют одновременно, по одному на читателя
+	private List<Integer> race(Function<Person, MockHttpServletRequestBuilder> request) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(READERS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Integer>> responses = new ArrayList<>();
+			for (Person reader : readers) {
+				responses.add(executor.submit(() -> {
+					start.await();
+					return mockMvc.perform(request.apply(reader)
+									.with(user("admin").roles("ADMIN")).with(csrf()))
+							.andReturn().getResponse().getStatus();
+				}));
+			}
+			start.countDown();
+
+			List<Integer> statuses = new ArrayList<>();
+			for (Future<Integer> response : responses)
+				statuses.add(response.get(30, TimeUnit.SECONDS));
+			return statuses;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
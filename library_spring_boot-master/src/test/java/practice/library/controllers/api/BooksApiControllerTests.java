@@ -0,0 +1,108 @@
+package practice.library.controllers.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class BooksApiControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@BeforeEach
+	void seed() {
+		for (int i = 0; i < 3; i++)
+			booksRepository.save(new Book("Книга " + i, "Автор " + i, 1950 + i));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void pagesCarryNextLinks() throws Exception {
+		mockMvc.perform(get("/api/v1/books").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content", hasSize(2)))
+				.andExpect(jsonPath("$.content[0].title").value("Книга 0"))
+				.andExpect(jsonPath("$.content[0].ownerId").doesNotExist())
+				.andExpect(jsonPath("$.next", containsString("cursor=")))
+				.andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")));
+	}
+
+	@Test
+	void takenBooksCarryOwnerAndLoanDate() throws Exception {
+		Person reader = peopleRepository.save(new Person("Анна Ахматова", "akhmatova", new Date()));
+		Book book = booksRepository.findAll().get(0);
+		book.setOwner(reader);
+		book.setTakenAt(new Date());
+		booksRepository.save(book);
+
+		mockMvc.perform(get("/api/v1/books/{id}", book.getId()))
+				.andExpect(jsonPath("$.ownerId").value(reader.getId()))
+				.andExpect(jsonPath("$.takenAt").exists());
+
+		mockMvc.perform(get("/api/v1/books"))
+				.andExpect(jsonPath("$.content[?(@.id == %d)].takenAt", book.getId()).isNotEmpty());
+	}
+
+	@Test
+	void answersNotModifiedForMatchingEtag() throws Exception {
+		String etag = mockMvc.perform(get("/api/v1/books"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/api/v1/books").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	void importsCsvStreamForAdmin() throws Exception {
+		mockMvc.perform(post("/api/v1/books/import")
+						.with(user("admin").roles("ADMIN")).with(csrf())
+						.contentType("text/csv")
+						.content("Идиот,Достоевский,1869\nБесы,Достоевский,год\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported").value(1))
+				.andExpect(jsonPath("$.errors[0].row").value(2));
+
+		mockMvc.perform(post("/api/v1/books/import").with(csrf())
+						.contentType("text/csv").content("Идиот,Достоевский,1869\n"))
+				.andExpect(status().isForbidden());
+	}
+}
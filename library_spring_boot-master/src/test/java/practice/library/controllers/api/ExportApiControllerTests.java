@@ -0,0 +1,99 @@
+package practice.library.controllers.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class ExportApiControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@BeforeEach
+	void seed() {
+		Person reader = peopleRepository.save(new Person("Читатель", "reader", new Date()));
+		for (int i = 0; i < 5; i++) {
+			Book book = new Book("Книга " + i, "Автор, " + i, 1950 + i);
+			if (i % 2 == 0) {
+				book.setOwner(reader);
+				book.setTakenAt(new Date());
+			}
+			booksRepository.save(book);
+		}
+	}
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+	}
+
+	@Test
+	void streamsCatalogAsCsvWithoutEtagBuffering() throws Exception {
+		String csv = mockMvc.perform(get("/api/v1/export/books"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.csv\""))
+				.andExpect(header().doesNotExist(HttpHeaders.ETAG))
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+		assertThat(csv.lines()).hasSize(6)
+				.first().isEqualTo("id,title,author,yearOfProd,ownerId,takenAt");
+		assertThat(csv).contains(",Книга 0,\"Автор, 0\",1950,");
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void loansAreExportedAsGzippedNdjson() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/v1/export/loans").param("format", "ndjson").param("gzip", "true"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("application/gzip"))
+				.andReturn();
+
+		byte[] body = result.getResponse().getContentAsByteArray();
+		String ndjson = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(),
+				StandardCharsets.UTF_8);
+		assertThat(ndjson.lines()).hasSize(3)
+				.allSatisfy(line -> assertThat(line).contains("\"ownerName\":\"Читатель\"", "\"overdue\":false"));
+	}
+
+	@Test
+	void peopleExportIsForAdminsOnly() throws Exception {
+		mockMvc.perform(get("/api/v1/export/people"))
+				.andExpect(status().isForbidden());
+
+		// Отказ приходит до того, как ответ получил заголовки файла и начал сжиматься
+		mockMvc.perform(get("/api/v1/export/loans").param("gzip", "true"))
+				.andExpect(status().isForbidden())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_DISPOSITION))
+				.andExpect(content().bytes(new byte[0]));
+	}
+}
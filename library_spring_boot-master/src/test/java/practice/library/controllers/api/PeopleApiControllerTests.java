@@ -0,0 +1,79 @@
+package practice.library.controllers.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.PeoplePrefixIndex;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PeopleApiControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private PeoplePrefixIndex peoplePrefixIndex;
+
+	@BeforeEach
+	void seed() {
+		peopleRepository.save(new Person("Анна Ахматова", "akhmatova", new Date()));
+		peopleRepository.save(new Person("Андрей Белый", "bely", new Date()));
+		peopleRepository.save(new Person("Борис Пастернак", "pasternak", new Date()));
+		peoplePrefixIndex.rebuild();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		peopleRepository.deleteAll();
+		peoplePrefixIndex.rebuild();
+	}
+
+	@Test
+	void looksUpReadersByNameOrUsernamePrefix() throws Exception {
+		mockMvc.perform(get("/api/v1/people/lookup").param("q", "ан")
+						.with(user("admin").roles("ADMIN")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[*].name", containsInAnyOrder("Анна Ахматова", "Андрей Белый")));
+
+		mockMvc.perform(get("/api/v1/people/lookup").param("q", "past")
+						.with(user("admin").roles("ADMIN")))
+				.andExpect(jsonPath("$.content", hasSize(1)))
+				.andExpect(jsonPath("$.content[0].name").value("Борис Пастернак"));
+	}
+
+	@Test
+	void nextLinkIsOnlyGivenWhenMoreResultsFollow() throws Exception {
+		mockMvc.perform(get("/api/v1/people/lookup").param("q", "ан").param("size", "1")
+						.with(user("admin").roles("ADMIN")))
+				.andExpect(jsonPath("$.content", hasSize(1)))
+				.andExpect(jsonPath("$.next", containsString("page=1")));
+
+		mockMvc.perform(get("/api/v1/people/lookup").param("q", "ан").param("size", "1").param("page", "1")
+						.with(user("admin").roles("ADMIN")))
+				.andExpect(jsonPath("$.content", hasSize(1)))
+				.andExpect(jsonPath("$.next").value(nullValue()));
+	}
+
+	@Test
+	void lookupIsForAdminsOnly() throws Exception {
+		mockMvc.perform(get("/api/v1/people/lookup").param("q", "ан").with(user("reader")))
+				.andExpect(status().isForbidden());
+	}
+}
@@ -0,0 +1,167 @@
+package practice.library.datasource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import practice.library.cluster.DatabaseClock;
+import practice.library.models.Book;
+import practice.library.projections.BookCardView;
+import practice.library.services.BookService;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Основная база и реплика — две независимые H2 в памяти; репликации между ними нет,
+// поэтому по содержимому видно, откуда пришло чтение
+@SpringBootTest(properties = {
+		"spring.datasource.url=" + ReadWriteRoutingTests.PRIMARY_URL,
+		"library.datasource.replicas[0].url=" + ReadWriteRoutingTests.REPLICA_URL,
+		"library.datasource.replicas[1].url=jdbc:h2:tcp://127.0.0.1:1/mem:down",
+		"library.datasource.replica-connection-timeout-millis=250",
+		"library.datasource.health-check-millis=600000",
+		"spring.cache.type=none"
+})
+class ReadWriteRoutingTests {
+
+	static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+	static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+	private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+
+	private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeAll
+	static void migrateReplica() {
+		Flyway.configure()
+				.dataSource(REPLICA_URL, "sa", "")
+				.locations("classpath:db/migration", "classpath:practice/library/migrations")
+				.load()
+				.migrate();
+	}
+
+	@BeforeEach
+	void checkReplicas() throws Exception {
+		dataSource.unwrap(ReadWriteRoutingDataSource.class).checkReplicas();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+			database.update("delete from Book");
+			database.update("delete from Person");
+		}
+	}
+
+	@Test
+	void readOnlyTransactionsAreServedByReplica() {
+		replica.update("insert into Book (id, title, author, year_of_prod) values (900, 'Только на реплике', 'Автор', 2000)");
+
+		for (int i = 0; i < 4; i++)
+			assertThat(bookService.show(900)).extracting(Book::getTitle).isEqualTo("Только на реплике");
+	}
+
+	@Test
+	void unreachableReplicaIsTakenOutOfRotation() throws Exception {
+		assertThat(dataSource.unwrap(ReadWriteRoutingDataSource.class).healthyReplicas())
+				.containsExactly("replica-1");
+	}
+
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void writerReadsOwnWritesFromPrimaryWhileOthersUseReplica() {
+		Book book = new Book("Новая книга", "Автор", 2000);
+		bookService.save(book);
+
+		assertThat(primary.queryForObject("select count(*) from Book", Integer.class)).isEqualTo(1);
+		assertThat(bookService.show(book.getId())).isNotNull();
+
+		SecurityContextHolder.getContext().setAuthentication(
+				new TestingAuthenticationToken("reader", null, "ROLE_USER"));
+		assertThat(bookService.show(book.getId())).isNull();
+	}
+
+	@Test
+	void cachePopulatingReadsUsePrimary() {
+		replica.update("insert into Book (id, title, author, year_of_prod) values (901, 'Старая копия', 'Автор', 2000)");
+		primary.update("insert into Book (id, title, author, year_of_prod) values (901, 'Новое название', 'Автор', 2000)");
+
+		assertThat(bookService.show(901)).extracting(Book::getTitle).isEqualTo("Старая копия");
+		assertThat(bookService.card(901)).extracting(BookCardView::getTitle).isEqualTo("Новое название");
+	}
+
+	// Другой узел не видит отметку в памяти этого, но находит её в сессии пользователя
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void writeMarkFollowsTheSessionToAnotherNode() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setSession(new MockHttpSession());
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		try {
+			bookService.save(new Book("Новая книга", "Автор", 2000));
+
+			DatabaseClock clock = new DatabaseClock(System::nanoTime);
+			clock.sync(primary);
+			ReadYourWrites otherNode = new ReadYourWrites(5000, clock);
+			assertThat(otherNode.wroteRecently()).isTrue();
+
+			RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+			assertThat(otherNode.wroteRecently()).isFalse();
+		} finally {
+			RequestContextHolder.resetRequestAttributes();
+		}
+	}
+
+	@Test
+	@WithMockUser(username = "admin")
+	void writeTransactionRegistersOneReadYourWritesMark() {
+		ReadWriteRoutingDataSource routing = unwrap();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			int before = TransactionSynchronizationManager.getSynchronizations().size();
+			for (int i = 0; i < 3; i++) {
+				try (Connection connection = routing.getConnection()) {
+					assertThat(connection.isReadOnly()).isFalse();
+				} catch (SQLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(before + 1);
+		});
+	}
+
+	private ReadWriteRoutingDataSource unwrap() {
+		try {
+			return dataSource.unwrap(ReadWriteRoutingDataSource.class);
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
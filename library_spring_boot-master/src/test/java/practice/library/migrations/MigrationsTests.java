@@ -0,0 +1,47 @@
+package practice.library.migrations;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class MigrationsTests {
+
+	@Autowired
+	private Flyway flyway;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@AfterEach
+	void cleanUp() {
+		peopleRepository.deleteAll();
+	}
+
+	@Test
+	void allMigrationsAreApplied() {
+		assertThat(flyway.info().pending()).isEmpty();
+		assertThat(Arrays.stream(flyway.info().applied()).map(MigrationInfo::getVersion).map(Object::toString))
+				.containsExactly("1", "2", "3", "4", "5", "6", "7", "8", "9");
+	}
+
+	@Test
+	void usernamesAreUnique() {
+		peopleRepository.save(new Person("Первый", "reader", new Date()));
+
+		assertThatThrownBy(() -> peopleRepository.save(new Person("Второй", "reader", new Date())))
+				.isInstanceOf(DataIntegrityViolationException.class);
+	}
+}
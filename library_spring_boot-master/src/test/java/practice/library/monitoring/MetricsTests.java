@@ -0,0 +1,112 @@
+package practice.library.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Book;
+import practice.library.repositories.BooksRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class MetricsTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+	}
+
+	@Test
+	@WithMockUser
+	void serviceCallsAreTimedPerRouteAndStatementsCounted() throws Exception {
+		Book book = booksRepository.save(new Book("Метрики", "Автор", 2000));
+		long before = cardCount();
+
+		mockMvc.perform(get("/api/v1/books/{id}", book.getId()))
+				.andExpect(status().isOk());
+
+		assertThat(cardCount()).isEqualTo(before + 1);
+
+		assertThat(meterRegistry.find("library.request.statements")
+				.tags("method", "GET", "route", "/api/v1/books/{id}")
+				.summary())
+				.isNotNull()
+				.satisfies(statements -> assertThat(statements.totalAmount()).isPositive());
+	}
+
+	@Test
+	@WithMockUser
+	void statementsAndJdbcTimeAreReportedInHeaders() throws Exception {
+		Book book = booksRepository.save(new Book("Заголовки", "Автор", 2000));
+
+		mockMvc.perform(get("/api/v1/books/{id}", book.getId()))
+				.andExpect(status().isOk())
+				.andExpect(header().string(RequestStatementsFilter.STATEMENTS_HEADER, "1"))
+				.andExpect(header().exists(RequestStatementsFilter.JDBC_MILLIS_HEADER));
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void slowQueriesAreListedWithBindParameters() throws Exception {
+		Book book = booksRepository.save(new Book("Медленная", "Автор", 2000));
+		mockMvc.perform(delete("/actuator/slowqueries").with(csrf()))
+				.andExpect(status().is2xxSuccessful());
+
+		mockMvc.perform(get("/api/v1/books/{id}", book.getId()))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/actuator/slowqueries"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[?(@.route == '/api/v1/books/{id}')].parameters[0]")
+						.value(String.valueOf(book.getId())));
+	}
+
+	@Test
+	void prometheusScrapeNeedsNoLoginAndIncludesPoolsAndHibernate() throws Exception {
+		mockMvc.perform(get("/books"))
+				.andExpect(status().is3xxRedirection());
+
+		String scrape = mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		assertThat(scrape).contains("hikaricp_connections_active", "hibernate_statements_total",
+				"library_password_queue", "cache_gets_total");
+	}
+
+	@Test
+	@WithMockUser
+	void otherActuatorEndpointsAreForAdminsOnly() throws Exception {
+		mockMvc.perform(get("/actuator/metrics"))
+				.andExpect(status().isForbidden());
+	}
+
+	private long cardCount() {
+		Timer card = meterRegistry.find("library.service")
+				.tags("class", "BookService", "method", "card", "route", "/api/v1/books/{id}")
+				.timer();
+		return card == null ? 0 : card.count();
+	}
+}
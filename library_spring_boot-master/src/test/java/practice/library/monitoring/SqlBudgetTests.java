@@ -0,0 +1,77 @@
+package practice.library.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "library.sql.routes[/api/v1/books/take]=1")
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMIN")
+class SqlBudgetTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+	}
+
+	@Test
+	void routeOverItsStatementBudgetIsReportedWithoutFailingTheRequest() throws Exception {
+		Person reader = peopleRepository.save(new Person("Читатель", "reader", new Date()));
+		Book book = booksRepository.save(new Book("Книга", "Автор", 2000));
+		double before = exceeded("/api/v1/books/take");
+
+		mockMvc.perform(post("/api/v1/books/take").with(csrf())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"personId\": " + reader.getId() + ", \"bookIds\": [" + book.getId() + "]}"))
+				.andExpect(status().isOk());
+
+		assertThat(exceeded("/api/v1/books/take")).isEqualTo(before + 1);
+	}
+
+	@Test
+	void routesWithoutBudgetAreNotChecked() throws Exception {
+		Book book = booksRepository.save(new Book("Книга", "Автор", 2000));
+
+		mockMvc.perform(get("/api/v1/books/{id}", book.getId()))
+				.andExpect(status().isOk());
+
+		assertThat(exceeded("/api/v1/books/{id}")).isZero();
+	}
+
+	private double exceeded(String route) {
+		Counter counter = meterRegistry.find("library.request.budget.exceeded").tag("route", route).counter();
+		return counter == null ? 0 : counter.count();
+	}
+}
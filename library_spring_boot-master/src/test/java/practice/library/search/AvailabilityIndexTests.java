@@ -0,0 +1,58 @@
+package practice.library.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityIndexTests {
+
+	private AvailabilityIndex index;
+
+	@BeforeEach
+	void fill() {
+		index = new AvailabilityIndex(null, null, 0);
+		for (long id = 1; id <= 10; id++)
+			index.put(id, id % 3 == 0 ? 100L : null);
+		index.put(1_000_000, 200L);
+	}
+
+	@Test
+	void countsAvailableBooksAndLoansPerOwner() {
+		assertThat(index.availableCount()).isEqualTo(7);
+		assertThat(index.onLoanCount()).isEqualTo(4);
+		assertThat(index.loans(100)).isEqualTo(3);
+		assertThat(index.loans(List.of(100L, 200L, 300L))).containsOnlyKeys(100L, 200L).containsEntry(200L, 1);
+	}
+
+	@Test
+	void pagesAvailableBooksById() {
+		assertThat(index.available(0, 4)).containsExactly(1L, 2L, 4L, 5L);
+		assertThat(index.available(5, 4)).containsExactly(7L, 8L, 10L);
+		assertThat(index.available(10, 4)).isEmpty();
+	}
+
+	@Test
+	void changesReplaceBookState() {
+		index.put(3, null);
+		index.put(3, null);
+		index.put(4, 100L);
+		index.remove(6);
+
+		assertThat(index.isAvailable(3)).isTrue();
+		assertThat(index.isAvailable(4)).isFalse();
+		assertThat(index.loans(100)).isEqualTo(2);
+		assertThat(index.availableCount() + index.onLoanCount()).isEqualTo(10);
+	}
+
+	@Test
+	void releasesBooksOfDeletedOwner() {
+		index.release(100);
+
+		assertThat(index.loans(100)).isZero();
+		assertThat(index.available(0, 20)).contains(3L, 6L, 9L);
+		assertThat(index.onLoanCount()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,79 @@
+package practice.library.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrefixIndexTests {
+
+	private PrefixIndex index;
+
+	@BeforeEach
+	void fill() {
+		index = new PrefixIndex() {};
+		index.rebuild(List.of(
+				new SearchDocument(1, "Иван Петров ivan"),
+				new SearchDocument(2, "Ирина Петрова irina"),
+				new SearchDocument(3, "Пётр Иванов petr"),
+				new SearchDocument(4, "Иван Сидоров sidorov")));
+	}
+
+	@Test
+	void findsByWordPrefix() {
+		assertThat(index.search("Петр", 0, 10)).containsExactly(1L, 2L);
+		assertThat(index.search("ив", 0, 10)).containsExactlyInAnyOrder(1L, 3L, 4L);
+		assertThat(index.search("sid", 0, 10)).containsExactly(4L);
+		assertThat(index.search("етр", 0, 10)).isEmpty();
+	}
+
+	@Test
+	void requiresEveryQueryWord() {
+		assertThat(index.search("иван пет", 0, 10)).containsExactly(1L);
+		assertThat(index.search("ив сидоров", 0, 10)).containsExactly(4L);
+		assertThat(index.search("  ", 0, 10)).isEmpty();
+	}
+
+	@Test
+	void paginatesResults() {
+		List<Long> all = index.search("и", 0, 10);
+
+		assertThat(all).hasSize(4);
+		assertThat(index.search("и", 1, 2)).containsExactlyElementsOf(all.subList(2, 4));
+		assertThat(index.search("и", 2, 2)).isEmpty();
+	}
+
+	@Test
+	void updatesIncrementally() {
+		index.put(new SearchDocument(2, "Ирина Смирнова irina"));
+		index.remove(1);
+
+		assertThat(index.search("петр", 0, 10)).isEmpty();
+		assertThat(index.search("смир", 0, 10)).containsExactly(2L);
+		assertThat(index.size()).isEqualTo(3);
+	}
+
+	@Test
+	void rebuildSwapsInCompleteIndexAndKeepsConcurrentChanges() {
+		List<Long> duringRebuild = new ArrayList<>();
+		index.rebuild(() -> {
+			duringRebuild.addAll(index.search("петр", 0, 10));
+			index.put(new SearchDocument(5, "Пётр Петрович petrovich"));
+			return List.of(new SearchDocument(1, "Иван Петров ivan"));
+		});
+
+		assertThat(duringRebuild).containsExactly(1L, 2L);
+		assertThat(index.search("петр", 0, 10)).containsExactly(1L, 5L);
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	@Test
+	void negativePageIsRejected() {
+		assertThatThrownBy(() -> index.search("ив", -1, 10))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,117 @@
+package practice.library.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchIndexTests {
+
+	private SearchIndex index;
+
+	@BeforeEach
+	void fill() {
+		index = new SearchIndex(0.5) {};
+		index.rebuild(List.of(
+				new SearchDocument(1, "Война и мир Лев Толстой"),
+				new SearchDocument(2, "Анна Каренина Лев Толстой"),
+				new SearchDocument(3, "Преступление и наказание Фёдор Достоевский"),
+				new SearchDocument(4, "War and Peace Leo Tolstoy")));
+	}
+
+	@Test
+	void findsByAuthorAndRanksExactWordsFirst() {
+		assertThat(index.search("толстой", 0, 10)).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void findsByPrefixAndWithTypos() {
+		assertThat(index.search("Достоев", 0, 10)).containsExactly(3L);
+		assertThat(index.search("pece", 0, 10)).containsExactly(4L);
+	}
+
+	@Test
+	void paginatesResults() {
+		assertThat(index.search("толстой", 1, 1)).containsExactly(2L);
+		assertThat(index.search("толстой", 2, 1)).isEmpty();
+	}
+
+	// Отбор ограниченной кучей даёт тот же порядок, что полная сортировка по числу совпавших триграмм и id
+	@Test
+	void pagesFollowFullRankingOnLargerCatalog() {
+		String[] words = {"тайна", "море", "война", "мир", "остров", "звезда", "морозов", "толстой"};
+		Random random = new Random(7);
+		List<SearchDocument> documents = new ArrayList<>();
+		for (int id = 0; id < 500; id++)
+			documents.add(new SearchDocument(id, words[random.nextInt(words.length)] + " "
+					+ words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]));
+		index.rebuild(documents);
+
+		String query = "море звезда";
+		Set<String> queryTrigrams = SearchIndex.trigrams(query);
+		int threshold = (int) Math.ceil(queryTrigrams.size() * 0.5);
+		Map<Long, Long> scores = new HashMap<>();
+		for (SearchDocument document : documents) {
+			long score = SearchIndex.trigrams(document.text()).stream().filter(queryTrigrams::contains).count();
+			if (score >= threshold)
+				scores.put(document.id(), score);
+		}
+		List<Long> expected = scores.keySet().stream()
+				.sorted(Comparator.<Long, Long>comparing(scores::get).reversed().thenComparing(Comparator.naturalOrder()))
+				.toList();
+
+		List<Long> paged = new ArrayList<>();
+		for (int page = 0; page * 7 < expected.size() + 7; page++)
+			paged.addAll(index.search(query, page, 7));
+		assertThat(expected).hasSizeGreaterThan(50);
+		assertThat(paged).isEqualTo(expected);
+	}
+
+	@Test
+	void scanStopsAfterCandidateLimit() {
+		SearchIndex limited = new SearchIndex(0.5, 3) {};
+		List<SearchDocument> documents = new ArrayList<>();
+		for (int id = 1; id <= 10; id++)
+			documents.add(new SearchDocument(id, id <= 5 ? "Толстй" : "Лев Толстой"));
+		limited.rebuild(documents);
+
+		// Точные совпадения 6–10 лежат за пределами первых трёх кандидатов
+		assertThat(limited.search("толстой", 0, 10)).containsExactly(1L, 2L, 3L);
+		assertThat(index.search("толстой", 0, 10)).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void updatesIncrementally() {
+		index.put(new SearchDocument(2, "Анна Каренина"));
+		index.remove(1);
+		index.put(new SearchDocument(5, "Детство Лев Толстой"));
+
+		assertThat(index.search("толстой", 0, 10)).containsExactly(5L);
+		assertThat(index.size()).isEqualTo(4);
+	}
+
+	// Поставщик документов вызывается посреди перестройки: поиск в это время видит прежний индекс,
+	// а изменение, пришедшее после чтения документов, не теряется при подмене
+	@Test
+	void rebuildSwapsInCompleteIndexAndKeepsConcurrentChanges() {
+		List<Long> duringRebuild = new ArrayList<>();
+		index.rebuild(() -> {
+			duringRebuild.addAll(index.search("толстой", 0, 10));
+			index.put(new SearchDocument(6, "Отрочество Лев Толстой"));
+			return List.of(new SearchDocument(1, "Война и мир Лев Толстой"));
+		});
+
+		assertThat(duringRebuild).containsExactly(1L, 2L);
+		assertThat(index.search("толстой", 0, 10)).containsExactlyInAnyOrder(1L, 6L);
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	@Test
+	void negativePageIsRejected() {
+		assertThatThrownBy(() -> index.search("толстой", -1, 10))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,110 @@
+package practice.library.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Два экземпляра LoginAttempts над одной базой изображают два узла
+@SpringBootTest
+class LoginAttemptsTests {
+
+	private static final long WINDOW = TimeUnit.SECONDS.toMillis(60);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private LoginAttempts first;
+
+	private LoginAttempts second;
+
+	@BeforeEach
+	void setUp() {
+		first = new LoginAttempts(jdbcTemplate, WINDOW, clock::get);
+		second = new LoginAttempts(jdbcTemplate, WINDOW, clock::get);
+		// Середина интервала: расхождение замеров часов базы в несколько миллисекунд не сдвигает границу
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW + WINDOW / 2 - Math.floorMod(first.millis(), WINDOW)));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		first.close();
+		second.close();
+		jdbcTemplate.update("delete from login_attempt");
+	}
+
+	@Test
+	void attemptsOnAllNodesShareOneLimit() {
+		assertThat(first.tryAcquire("username", "ivan", 3)).isTrue();
+		assertThat(second.tryAcquire("username", "ivan", 3)).isTrue();
+		assertThat(first.tryAcquire("username", "ivan", 3)).isTrue();
+		assertThat(second.tryAcquire("username", "ivan", 3)).isFalse();
+		assertThat(second.tryAcquire("ip", "ivan", 3)).isTrue();
+
+		second.release("username", "ivan");
+		assertThat(first.tryAcquire("username", "ivan", 3)).isTrue();
+
+		first.reset("username", "ivan");
+		assertThat(second.tryAcquire("username", "ivan", 3)).isTrue();
+	}
+
+	@Test
+	void previousIntervalFadesOutOfTheWindow() {
+		for (int i = 0; i < 4; i++)
+			assertThat(first.tryAcquire("username", "petr", 4)).isTrue();
+		assertThat(second.tryAcquire("username", "petr", 4)).isFalse();
+
+		// Следующий интервал, из окна вышла четверть: от четырёх попыток остаются три, место есть для одной
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW * 3 / 4));
+		assertThat(second.tryAcquire("username", "petr", 4)).isTrue();
+		assertThat(first.tryAcquire("username", "petr", 4)).isFalse();
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2 * WINDOW));
+		assertThat(first.purge()).isEqualTo(2);
+		assertThat(first.tryAcquire("username", "petr", 4)).isTrue();
+	}
+
+	// Потоки обоих узлов одновременно засчитывают попытки одного ключа: проходит ровно limit
+	@Test
+	void grantsExactlyTheLimitAcrossNodesUnderContention() throws Exception {
+		int threads = 8;
+		int limit = 20;
+		AtomicInteger acquired = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				LoginAttempts node = t % 2 == 0 ? first : second;
+				workers.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < 10; i++) {
+						if (node.tryAcquire("ip", "10.0.0.1", limit))
+							acquired.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> worker : workers)
+				worker.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(acquired.get()).isEqualTo(limit);
+	}
+}
@@ -0,0 +1,152 @@
+package practice.library.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+import practice.library.services.RegistrationService;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+// Лимит в тестах — 5 попыток на имя пользователя с одного адреса в минуту; имена не пересекаются с другими тестами,
+// потому что ограничитель общий для всего контекста
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoginThrottleTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private RegistrationService registrationService;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		peopleRepository.deleteAll();
+		jdbcTemplate.update("delete from login_attempt");
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void repeatedFailuresBlockTheUsernameBeforeAuthentication() throws Exception {
+		register("mallory");
+		double rejectedBefore = rejected();
+
+		for (int i = 0; i < 5; i++)
+			login("mallory", "guess-" + i).andExpect(redirectedUrl("/auth/login?error"));
+
+		login("mallory", "guess-5").andExpect(redirectedUrl("/auth/login?blocked"));
+		// Даже верный пароль не проверяется, пока окно не сдвинется
+		login("MALLORY", "secret").andExpect(redirectedUrl("/auth/login?blocked"));
+		assertThat(rejected()).isEqualTo(rejectedBefore + 2);
+	}
+
+	@Test
+	void successfulLoginClearsPreviousFailures() throws Exception {
+		register("olga");
+
+		for (int i = 0; i < 4; i++)
+			login("olga", "guess-" + i).andExpect(redirectedUrl("/auth/login?error"));
+		login("olga", "secret").andExpect(redirectedUrl("/books"));
+
+		for (int i = 0; i < 5; i++)
+			login("olga", "typo-" + i).andExpect(redirectedUrl("/auth/login?error"));
+		login("olga", "typo-5").andExpect(redirectedUrl("/auth/login?blocked"));
+	}
+
+	@Test
+	void failuresFromOneAddressDoNotLockTheAccountElsewhere() throws Exception {
+		register("nadia");
+
+		for (int i = 0; i < 5; i++)
+			login("nadia", "guess-" + i, "203.0.113.7").andExpect(redirectedUrl("/auth/login?error"));
+		login("nadia", "secret", "203.0.113.7").andExpect(redirectedUrl("/auth/login?blocked"));
+
+		// Владелец со своего адреса входит, а подбирающий остаётся заблокированным
+		login("nadia", "secret", "198.51.100.20").andExpect(redirectedUrl("/books"));
+		login("nadia", "guess-5", "203.0.113.7").andExpect(redirectedUrl("/auth/login?blocked"));
+	}
+
+	// Попытки, засчитанные другим узлом, закрывают вход и здесь, хотя счётчики этого узла их не видели
+	@Test
+	void attemptsOnAnotherNodeCountTowardsTheLimit() throws Exception {
+		register("eve");
+		long window = TimeUnit.SECONDS.toNanos(60);
+		try (LoginAttempts shared = new LoginAttempts(jdbcTemplate, TimeUnit.NANOSECONDS.toMillis(window),
+				System::nanoTime)) {
+			LoginThrottle otherNode = new LoginThrottle(5, 50, window, 64, System::nanoTime, shared);
+			for (int i = 0; i < 5; i++)
+				assertThat(otherNode.tryAcquire("eve", "127.0.0.1")).isTrue();
+		}
+
+		login("eve", "secret").andExpect(redirectedUrl("/auth/login?blocked"));
+		login("eve", "secret", "198.51.100.20").andExpect(redirectedUrl("/books"));
+	}
+
+	@Test
+	void attemptRejectedByAddressLeavesUsernameLimitIntact() {
+		AtomicLong clock = new AtomicLong();
+		long window = TimeUnit.SECONDS.toNanos(60);
+		LoginThrottle throttle = new LoginThrottle(2, 3, window, 64, clock::get);
+
+		assertThat(throttle.tryAcquire("petr", "10.0.0.1")).isTrue();
+		assertThat(throttle.tryAcquire("ivan", "10.0.0.1")).isTrue();
+		assertThat(throttle.tryAcquire("anna", "10.0.0.1")).isTrue();
+		for (int i = 0; i < 3; i++)
+			assertThat(throttle.tryAcquire("ivan", "10.0.0.1")).isFalse();
+
+		// Через полтора окна от адреса остаётся 1.5 попытки из 3, от ivan — 0.5 из 2: отклонённые по адресу
+		// попытки имени не засчитаны, иначе их было бы 2 и вход остался бы закрыт
+		clock.set(window + window / 2);
+		assertThat(throttle.tryAcquire("ivan", "10.0.0.1")).isTrue();
+	}
+
+	private void register(String username) {
+		Person person = new Person("Читатель " + username, username, new Date());
+		person.setPassword("secret");
+		registrationService.register(person);
+	}
+
+	private ResultActions login(String username, String password) throws Exception {
+		return login(username, password, "127.0.0.1");
+	}
+
+	private ResultActions login(String username, String password, String address) throws Exception {
+		return mockMvc.perform(post("/process_login").param("username", username).param("password", password)
+				.with(csrf()).with(request -> {
+					request.setRemoteAddr(address);
+					return request;
+				}));
+	}
+
+	private double rejected() {
+		return meterRegistry.get("library.login.rejected").tag("key", "username").counter().count();
+	}
+}
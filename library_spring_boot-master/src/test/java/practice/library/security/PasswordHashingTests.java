@@ -0,0 +1,73 @@
+package practice.library.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Пул хеширования подменён отказом, как при переполненной очереди или таймауте
+@SpringBootTest
+@AutoConfigureMockMvc
+class PasswordHashingTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@MockBean
+	private PasswordEncoder passwordEncoder;
+
+	@AfterEach
+	void cleanUp() {
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void overloadedHashingReturnsTheFormWithServiceUnavailable() throws Exception {
+		when(passwordEncoder.encode(any())).thenThrow(
+				new AuthenticationServiceException("Сервер перегружен, повторите попытку позже"));
+
+		mockMvc.perform(post("/auth/registration").param("name", "Иван Иванов").param("username", "ivan")
+						.param("password", "secret").with(csrf()))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(view().name("auth/registration"))
+				.andExpect(model().attributeHasFieldErrors("person", "password"));
+		assertThat(peopleRepository.findPersonByUsername("ivan")).isEmpty();
+
+		Person person = new Person("Пётр Петров", "petr", new Date());
+		person.setPassword("{bcrypt}old-hash");
+		person.setRole("ROLE_USER");
+		person = peopleRepository.save(person);
+		mockMvc.perform(patch("/people/{id}", person.getId()).param("name", "Пётр Петров").param("username", "petr")
+						.param("password", "new-secret").with(csrf()).with(user(new PersonDetails(person))))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(view().name("people/edit"))
+				.andExpect(model().attributeHasFieldErrors("person", "password"));
+		assertThat(peopleRepository.findById(person.getId()).orElseThrow().getPassword()).isEqualTo("{bcrypt}old-hash");
+	}
+}
@@ -0,0 +1,156 @@
+package practice.library.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+import practice.library.services.RegistrationService;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SessionStoreTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private CompactSessionSerializer serializer;
+
+	@Autowired
+	private JdbcIndexedSessionRepository sessionRepository;
+
+	@Autowired
+	private RegistrationService registrationService;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("delete from spring_session");
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void securityContextIsStoredWithoutPassword() {
+		PersonDetails person = new PersonDetails(42, "ivan", "{bcrypt}$2a$10$hash", "ROLE_ADMIN");
+		SecurityContext context = new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(person,
+				"secret", person.getAuthorities()));
+
+		byte[] bytes = serializer.serialize(context);
+		SecurityContext restored = (SecurityContext) serializer.deserialize(bytes);
+
+		assertThat(bytes.length).isLessThan(32);
+		PersonDetails principal = (PersonDetails) restored.getAuthentication().getPrincipal();
+		assertThat(restored.getAuthentication().isAuthenticated()).isTrue();
+		assertThat(restored.getAuthentication().getCredentials()).isNull();
+		assertThat(principal.getId()).isEqualTo(42);
+		assertThat(principal.getUsername()).isEqualTo("ivan");
+		assertThat(principal.getPassword()).isNull();
+		assertThat(principal.isAdmin()).isTrue();
+	}
+
+	@Test
+	void csrfTokenAndOtherAttributesRoundTrip() {
+		DefaultCsrfToken token = new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "0f1e2d3c");
+
+		DefaultCsrfToken restored = (DefaultCsrfToken) serializer.deserialize(serializer.serialize(token));
+
+		assertThat(restored.getHeaderName()).isEqualTo("X-CSRF-TOKEN");
+		assertThat(restored.getParameterName()).isEqualTo("_csrf");
+		assertThat(restored.getToken()).isEqualTo("0f1e2d3c");
+		assertThat(serializer.deserialize(serializer.serialize("/books?page=2"))).isEqualTo("/books?page=2");
+	}
+
+	@Test
+	void loginSessionIsKeptInTheDatabase() throws Exception {
+		Person person = new Person("Иван Иванов", "ivan", new Date());
+		person.setPassword("secret");
+		registrationService.register(person);
+		double storedBefore = stored("security_context");
+
+		Cookie session = mockMvc.perform(post("/process_login").param("username", "ivan")
+						.param("password", "secret").with(csrf()))
+				.andExpect(redirectedUrl("/books"))
+				.andReturn().getResponse().getCookie("SESSION");
+
+		assertThat(session).isNotNull();
+		assertThat(stored("security_context")).isGreaterThan(storedBefore);
+		assertThat(jdbcTemplate.queryForObject("select count(*) from spring_session where principal_name = ?",
+				Integer.class, "ivan")).isEqualTo(1);
+
+		mockMvc.perform(get("/books").cookie(session))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void expiredSessionsAreRemovedOnReadAndBySweep() {
+		String read = expiredSession();
+		expiredSession();
+		Session active = sessions().createSession();
+		sessions().save(active);
+
+		assertThat(sessionRepository.findById(read)).isNull();
+		assertThat(storedSessions()).isEqualTo(2);
+
+		sessionRepository.cleanUpExpiredSessions();
+		assertThat(storedSessions()).isEqualTo(1);
+		assertThat(sessionRepository.findById(active.getId())).isNotNull();
+	}
+
+	private String expiredSession() {
+		Session session = sessions().createSession();
+		session.setMaxInactiveInterval(Duration.ofSeconds(1));
+		session.setLastAccessedTime(session.getLastAccessedTime().minus(Duration.ofMinutes(1)));
+		sessions().save(session);
+		return session.getId();
+	}
+
+	// JdbcSession закрыт в пакете Spring Session, поэтому сессии создаются через общий интерфейс
+	@SuppressWarnings("unchecked")
+	private SessionRepository<Session> sessions() {
+		return (SessionRepository<Session>) (SessionRepository<?>) sessionRepository;
+	}
+
+	private int storedSessions() {
+		return jdbcTemplate.queryForObject("select count(*) from spring_session", Integer.class);
+	}
+
+	private double stored(String kind) {
+		return meterRegistry.get("library.session.attribute.size").tag("kind", kind).summary().count();
+	}
+}
@@ -0,0 +1,133 @@
+package practice.library.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowLimiterTests {
+
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	void previousIntervalFadesOutOfTheWindow() {
+		SlidingWindowLimiter limiter = new SlidingWindowLimiter(3, WINDOW, 64, clock::get);
+
+		for (int i = 0; i < 3; i++)
+			assertThat(limiter.tryAcquire("ivan").acquired()).isTrue();
+		assertThat(limiter.tryAcquire("ivan")).isEqualTo(SlidingWindowLimiter.Outcome.REJECTED);
+		assertThat(limiter.tryAcquire("petr").acquired()).isTrue();
+
+		// Начало следующего интервала: три попытки предыдущего ещё целиком в окне
+		clock.set(WINDOW);
+		assertThat(limiter.tryAcquire("ivan").acquired()).isFalse();
+
+		// Середина интервала: из окна вышла половина — 1.5 попытки, место есть ровно для одной
+		clock.set(WINDOW + WINDOW / 2);
+		assertThat(limiter.tryAcquire("ivan").acquired()).isTrue();
+		assertThat(limiter.tryAcquire("ivan").acquired()).isFalse();
+		assertThat(limiter.estimate("ivan")).isEqualTo(2.5);
+
+		clock.set(3 * WINDOW);
+		assertThat(limiter.estimate("ivan")).isZero();
+		assertThat(limiter.tryAcquire("ivan").acquired()).isTrue();
+	}
+
+	@Test
+	void resetForgetsTheKey() {
+		SlidingWindowLimiter limiter = new SlidingWindowLimiter(2, WINDOW, 64, clock::get);
+		limiter.tryAcquire("ivan");
+		limiter.tryAcquire("ivan");
+
+		limiter.reset("ivan");
+
+		assertThat(limiter.estimate("ivan")).isZero();
+		assertThat(limiter.tryAcquire("ivan").acquired()).isTrue();
+	}
+
+	@Test
+	void roomIsCheckedWithoutCountingAndReleaseReturnsAnAttempt() {
+		SlidingWindowLimiter limiter = new SlidingWindowLimiter(2, WINDOW, 64, clock::get);
+		limiter.tryAcquire("ivan");
+
+		assertThat(limiter.hasRoom("ivan")).isTrue();
+		assertThat(limiter.estimate("ivan")).isEqualTo(1);
+		limiter.tryAcquire("ivan");
+		assertThat(limiter.hasRoom("ivan")).isFalse();
+
+		limiter.release("ivan");
+		limiter.release("petr");
+		assertThat(limiter.estimate("ivan")).isEqualTo(1);
+		assertThat(limiter.tryAcquire("ivan").acquired()).isTrue();
+	}
+
+	@Test
+	void memoryIsBoundedAndBusyKeysSurviveEviction() {
+		SlidingWindowLimiter limiter = new SlidingWindowLimiter(5, WINDOW, 64, clock::get);
+		for (int i = 0; i < 4; i++)
+			limiter.tryAcquire("attacked");
+
+		int evictions = 0;
+		for (int i = 0; i < 10_000; i++) {
+			if (limiter.tryAcquire("user-" + i) == SlidingWindowLimiter.Outcome.ACQUIRED_EVICTING)
+				evictions++;
+		}
+
+		assertThat(limiter.capacity()).isEqualTo(64);
+		assertThat(evictions).isGreaterThan(10_000 - 64);
+		assertThat(limiter.estimate("attacked")).isEqualTo(4);
+		assertThat(limiter.tryAcquire("attacked").acquired()).isTrue();
+		assertThat(limiter.tryAcquire("attacked").acquired()).isFalse();
+	}
+
+	// Потоки одновременно бьют по общим ключам: каждому ключу достаётся ровно limit попыток, не больше и не меньше
+	@Test
+	void grantsExactlyTheLimitUnderContention() throws Exception {
+		int threads = 32;
+		int keys = 16;
+		int limit = 100;
+		int attemptsPerThread = 2_000;
+		SlidingWindowLimiter limiter = new SlidingWindowLimiter(limit, WINDOW, 1024, clock::get);
+		AtomicIntegerArray acquired = new AtomicIntegerArray(keys);
+		AtomicInteger rejected = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int offset = t;
+				workers.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < attemptsPerThread; i++) {
+						int key = (offset + i) % keys;
+						if (limiter.tryAcquire("key-" + key).acquired())
+							acquired.incrementAndGet(key);
+						else
+							rejected.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> worker : workers)
+				worker.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (int key = 0; key < keys; key++) {
+			assertThat(acquired.get(key)).isEqualTo(limit);
+			assertThat(limiter.estimate("key-" + key)).isEqualTo(limit);
+		}
+		assertThat(rejected.get()).isEqualTo(threads * attemptsPerThread - keys * limit);
+	}
+}
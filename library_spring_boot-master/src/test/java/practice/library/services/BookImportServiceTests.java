@@ -0,0 +1,94 @@
+package practice.library.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.test.context.support.WithMockUser;
+import practice.library.projections.BookView;
+import practice.library.repositories.BooksRepository;
+import practice.library.util.ImportReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@WithMockUser(roles = "ADMIN")
+class BookImportServiceTests {
+
+	@Autowired
+	private BookImportService bookImportService;
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void csvImportIsBatchedAndReportsBadRows() throws Exception {
+		StringBuilder csv = new StringBuilder("title,author,yearOfProd\n");
+		for (int i = 0; i < 2500; i++)
+			csv.append("Книга ").append(i).append(",\"Автор, ").append(i).append("\",").append(1900 + i % 100).append('\n');
+		csv.append("Без года,Автор,\n");
+		csv.append(",Автор,1950\n");
+		csv.append("\"Мастер и Маргарита\",\"Михаил Булгаков\",1966\n");
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		ImportReport report = bookImportService.importCsv(stream(csv.toString()));
+
+		assertThat(report.imported()).isEqualTo(2501);
+		assertThat(report.rejected()).isEqualTo(2);
+		assertThat(report.errors()).extracting(ImportReport.RowError::row).containsExactly(2501, 2502);
+		assertThat(booksRepository.count()).isEqualTo(2501);
+		// Пакеты по 50 вставок и по одному запросу к последовательности на 50 id
+		assertThat(statistics.getPrepareStatementCount()).isLessThan(200);
+		assertThat(bookService.search("булгаков", 0, 10).content())
+				.extracting(BookView::getTitle).containsExactly("Мастер и Маргарита");
+	}
+
+	@Test
+	void jsonArrayAndNdjsonAreAccepted() throws Exception {
+		ImportReport array = bookImportService.importJson(stream("""
+				[{"title": "Идиот", "author": "Достоевский", "yearOfProd": 1869},
+				 {"title": "Бесы", "author": "Достоевский", "yearOfProd": "не число"},
+				 {"title": "Подросток", "author": "Достоевский", "yearOfProd": 1875}]
+				"""));
+		assertThat(array.imported()).isEqualTo(2);
+		assertThat(array.errors()).extracting(ImportReport.RowError::row).containsExactly(2);
+
+		ImportReport ndjson = bookImportService.importJson(stream("""
+				{"title": "Анна Каренина", "author": "Толстой", "yearOfProd": 1878}
+				{"title": "Война и мир", "author": "Толстой", "yearOfProd": 1500}
+				"""));
+		assertThat(ndjson.imported()).isEqualTo(1);
+		assertThat(ndjson.errors()).singleElement()
+				.satisfies(error -> assertThat(error.message()).startsWith("yearOfProd"));
+		assertThat(booksRepository.count()).isEqualTo(3);
+	}
+
+	private static InputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,373 @@
+package practice.library.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import practice.library.config.CacheConfig;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.projections.BookCardView;
+import practice.library.projections.BookView;
+import practice.library.projections.LoanView;
+import practice.library.projections.OverdueLoanView;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.search.AvailabilityIndex;
+import practice.library.security.PersonDetails;
+import practice.library.util.BulkLoanResult;
+import practice.library.util.Cursor;
+import practice.library.util.KeysetPage;
+import practice.library.util.LoanConflictException;
+import practice.library.util.OverduePolicy;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class BookServiceTests {
+
+	@Autowired
+	private BookService bookService;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private OverduePolicy overduePolicy;
+
+	@Autowired
+	private AvailabilityIndex availabilityIndex;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Statistics statistics;
+
+	private final List<Book> books = new ArrayList<>();
+
+	@BeforeEach
+	void seed() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		List<Person> owners = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Person person = new Person("Читатель " + i, "reader" + i, new Date());
+			person.setRole("ROLE_USER");
+			owners.add(peopleRepository.save(person));
+		}
+		for (int i = 0; i < 10; i++) {
+			Book book = new Book("Книга " + i, "Автор " + i, 1900 + i);
+			book.setOwner(owners.get(i % owners.size()));
+			book.setTakenAt(new Date());
+			books.add(booksRepository.save(book));
+		}
+	}
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+		books.clear();
+		SecurityContextHolder.clearContext();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	void listPageDoesNotFetchOwnersOneByOne() {
+		statistics.clear();
+
+		assertThat(bookService.index(0, 20, true)).hasSize(10);
+		assertThat(bookService.index(null, 20)).satisfies(page -> assertThat(page.content()).hasSize(10));
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void showFetchesBookWithOwnerInSingleStatement() {
+		statistics.clear();
+
+		Book book = bookService.show(books.get(0).getId());
+
+		assertThat(book.getOwner().getName()).isEqualTo("Читатель 0");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void keysetPagesWalkWholeCatalogInOrder() {
+		List<Integer> years = new ArrayList<>();
+		String cursor = "";
+		do {
+			KeysetPage<BookView> page = bookService.index(cursor, 3);
+			page.content().forEach(book -> years.add(book.getYearOfProd()));
+			cursor = page.nextCursor();
+		} while (cursor != null);
+
+		assertThat(years).hasSize(10).isSorted();
+	}
+
+	@Test
+	void cursorWithoutYearIsRejected() {
+		String forged = new Cursor(null, books.get(0).getId()).encode();
+
+		assertThatThrownBy(() -> bookService.index(forged, 3))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+	}
+
+	@Test
+	void negativeSearchPageIsBadRequest() {
+		assertThatThrownBy(() -> bookService.search("книга", -1, 3))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void overdueCursorWithoutLoanDateIsRejected() {
+		String forged = new Cursor(null, books.get(0).getId()).encode();
+
+		assertThatThrownBy(() -> bookService.overdue(forged, 3))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void searchSeesBooksSavedThroughService() {
+		Book book = new Book("Мастер и Маргарита", "Михаил Булгаков", 1966);
+		bookService.save(book);
+
+		assertThat(bookService.search("булгаков", 0, 10).content())
+				.extracting(BookView::getTitle).containsExactly("Мастер и Маргарита");
+
+		bookService.delete(book.getId());
+
+		assertThat(bookService.search("булгаков", 0, 10).content()).isEmpty();
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void readsAreCachedUntilTheBookChanges() {
+		long id = books.get(0).getId();
+		bookService.card(id);
+		bookService.index(0, 20, false);
+		statistics.clear();
+
+		bookService.card(id);
+		bookService.index(0, 20, false);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+
+		bookService.freeBook(id);
+		statistics.clear();
+
+		// Страницы списка содержат ownerId, поэтому возврат книги сбрасывает и их
+		assertThat(bookService.card(id).getOwnerId()).isNull();
+		bookService.index(0, 20, false);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void missingBookOrReaderIsNotFoundWhileLostRaceIsConflict() {
+		long id = books.get(0).getId();
+		long missing = books.get(books.size() - 1).getId() + 1000;
+		Person reader = books.get(1).getOwner();
+		Person stranger = new Person("Незнакомец", "stranger", new Date());
+		stranger.setId(reader.getId() + 1000);
+
+		assertThatThrownBy(() -> bookService.freeBook(missing))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+		assertThatThrownBy(() -> bookService.takeBook(missing, reader))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+
+		bookService.freeBook(id);
+		assertThatThrownBy(() -> bookService.freeBook(id)).isInstanceOf(LoanConflictException.class);
+		assertThatThrownBy(() -> bookService.takeBook(id, stranger))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+		assertThatThrownBy(() -> bookService.takeBook(books.get(1).getId(), reader))
+				.isInstanceOf(LoanConflictException.class);
+	}
+
+	@Test
+	void editingLoanedBookKeepsItOnLoan() {
+		librarian();
+		availabilityIndex.reconcile();
+		Book loaned = books.get(0);
+		long reader = loaned.getOwner().getId();
+		int loansBefore = availabilityIndex.loans(reader);
+
+		// Форма редактирования присылает только название, автора и год
+		bookService.update(loaned.getId(), new Book("Новое название", "Новый автор", 1950));
+
+		Book stored = booksRepository.findWithOwnerById(loaned.getId()).orElseThrow();
+		assertThat(stored.getTitle()).isEqualTo("Новое название");
+		assertThat(stored.getOwner().getId()).isEqualTo(reader);
+		assertThat(stored.getTakenAt()).isNotNull();
+		assertThat(availabilityIndex.isAvailable(loaned.getId())).isFalse();
+		assertThat(availabilityIndex.loans(reader)).isEqualTo(loansBefore);
+		assertThat(bookService.card(loaned.getId()).getOwnerId()).isEqualTo(reader);
+	}
+
+	// Выдача в другом потоке во время незафиксированной правки: она ждёт блокировку строки и не затирается правкой
+	@Test
+	void editRacingWithTakeKeepsBothChanges() throws Exception {
+		librarian();
+		long id = books.get(0).getId();
+		Person reader = books.get(1).getOwner();
+		bookService.freeBook(id);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AtomicReference<Future<?>> take = new AtomicReference<>();
+			new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+				bookService.update(id, new Book("Новое название", "Новый автор", 1950));
+				take.set(executor.submit(() -> bookService.takeBook(id, reader)));
+				try {
+					take.get().get(200, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// Выдача ждёт фиксации правки
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			take.get().get(5, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Book stored = booksRepository.findWithOwnerById(id).orElseThrow();
+		assertThat(stored.getTitle()).isEqualTo("Новое название");
+		assertThat(stored.getOwner().getId()).isEqualTo(reader.getId());
+		assertThat(stored.getTakenAt()).isNotNull();
+	}
+
+	@Test
+	void cachedReadsHoldProjectionsUnderPerOverloadKeys() {
+		long id = books.get(0).getId();
+		bookService.card(id);
+		bookService.index(false);
+		bookService.index(0, 3, false);
+		bookService.index("", 3);
+
+		Cache pages = cacheManager.getCache(CacheConfig.BOOK_PAGES);
+		assertThat(pages.get("first:false").get()).isInstanceOf(List.class);
+		assertThat(pages.get("offset:0:3:false").get()).isInstanceOf(List.class);
+		assertThat(pages.get("cursor::3").get()).isInstanceOf(KeysetPage.class);
+		assertThat(cacheManager.getCache(CacheConfig.BOOKS).get(id).get())
+				.isInstanceOf(BookCardView.class)
+				.isNotInstanceOf(Book.class);
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void bulkLoansReportConflictsAndBatchUpdates() {
+		List<Long> ids = books.stream().map(Book::getId).toList();
+		bookService.freeBook(ids.get(0));
+		bookService.freeBook(ids.get(1));
+		long missing = ids.get(ids.size() - 1) + 1000;
+		statistics.clear();
+
+		BulkLoanResult returned = bookService.freeBooks(ids.subList(2, 6));
+		assertThat(returned.done()).containsExactlyElementsOf(ids.subList(2, 6));
+		assertThat(returned.conflicts()).isEmpty();
+		// Блокирующий SELECT и один пакет UPDATE
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+		long reader = peopleRepository.findAll().get(0).getId();
+		BulkLoanResult taken = bookService.takeBooks(List.of(ids.get(0), ids.get(2), ids.get(7), missing), reader);
+		assertThat(taken.done()).containsExactly(ids.get(0), ids.get(2));
+		assertThat(taken.conflicts()).containsExactly(ids.get(7), missing);
+		assertThat(booksRepository.findLoans(reader, overduePolicy.overdueSince()))
+				.extracting(LoanView::getId).contains(ids.get(0), ids.get(2));
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void overdueLoansAreSelectedByTheDatabase() {
+		Book late = books.get(3);
+		late.setTakenAt(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(11)));
+		booksRepository.save(late);
+
+		assertThat(bookService.overdue(null, 10).content())
+				.extracting(OverdueLoanView::getId).containsExactly(late.getId());
+		assertThat(booksRepository.findLoans(late.getOwner().getId(), overduePolicy.overdueSince()))
+				.filteredOn(LoanView::isOverdue)
+				.extracting(LoanView::getId).containsExactly(late.getId());
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void availabilityIndexFollowsLoansAndReconcilesWithDatabase() {
+		// Книги заведены в обход сервиса, поэтому индекс сначала сверяется с базой
+		availabilityIndex.reconcile();
+		List<Long> ids = books.stream().map(Book::getId).toList();
+		long reader = books.get(0).getOwner().getId();
+		assertThat(availabilityIndex.loans(reader)).isEqualTo(2);
+		assertThat(bookService.available(null, 10).content()).isEmpty();
+
+		bookService.freeBook(ids.get(0));
+		bookService.freeBooks(ids.subList(1, 3));
+		statistics.clear();
+
+		KeysetPage<BookView> first = bookService.available(null, 2);
+		assertThat(first.content()).extracting(BookView::getId).containsExactly(ids.get(0), ids.get(1));
+		assertThat(bookService.available(first.nextCursor(), 2).content())
+				.extracting(BookView::getId).containsExactly(ids.get(2));
+		assertThat(bookService.available(first.nextCursor(), 2).hasNext()).isFalse();
+		assertThat(bookService.availability().available()).isEqualTo(3);
+		assertThat(availabilityIndex.loans(reader)).isEqualTo(1);
+		// Отбор свободных книг делает индекс, из базы читаются только строки страниц
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+
+		Book changedBehindIndex = books.get(3);
+		changedBehindIndex.setOwner(null);
+		changedBehindIndex.setTakenAt(null);
+		booksRepository.save(changedBehindIndex);
+
+		assertThat(availabilityIndex.reconcile()).isEqualTo(1);
+		assertThat(availabilityIndex.isAvailable(ids.get(3))).isTrue();
+		assertThat(bookService.availability().onLoan()).isEqualTo(6);
+	}
+
+	// Правка книги записывает логин из PersonDetails, поэтому @WithMockUser здесь не подходит
+	private void librarian() {
+		Person librarian = new Person("Библиотекарь", "librarian", new Date());
+		librarian.setRole("ROLE_ADMIN");
+		PersonDetails details = new PersonDetails(librarian);
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+	}
+}
@@ -0,0 +1,104 @@
+package practice.library.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import practice.library.models.Person;
+import practice.library.repositories.PeopleRepository;
+import practice.library.security.PersonDetails;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PeopleDetailServiceTests {
+
+	@Autowired
+	private PeopleDetailService peopleDetailService;
+
+	@Autowired
+	private RegistrationService registrationService;
+
+	@Autowired
+	private PeopleService peopleService;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private AuthenticationConfiguration authenticationConfiguration;
+
+	@AfterEach
+	void cleanUp() {
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void principalIsCachedUntilPersonChanges() {
+		Person person = new Person("Иван Иванов", "ivan", new Date());
+		person.setPassword("secret");
+		registrationService.register(person);
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		PersonDetails first = (PersonDetails) peopleDetailService.loadUserByUsername("ivan");
+		statistics.clear();
+
+		assertThat(peopleDetailService.loadUserByUsername("ivan")).isSameAs(first);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(first.getId()).isEqualTo(person.getId());
+		assertThat(first.getRole()).isEqualTo("ROLE_USER");
+
+		Person updated = new Person("Иван Иванов", "ivan", new Date());
+		updated.setPassword("changed");
+		peopleService.update(person.getId(), updated);
+
+		assertThat(peopleDetailService.loadUserByUsername("ivan").getPassword())
+				.isNotEqualTo(first.getPassword());
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void profileUpdateKeepsHashWhenPasswordIsUnchanged() {
+		Person person = new Person("Пётр Петров", "petr", new Date());
+		person.setPassword("secret");
+		registrationService.register(person);
+		String hash = peopleRepository.findPersonByUsername("petr").orElseThrow().getPassword();
+
+		Person updated = new Person("Пётр Петрович Петров", "petr", new Date());
+		updated.setPassword(hash);
+		peopleService.update(person.getId(), updated);
+
+		assertThat(peopleRepository.findPersonByUsername("petr").orElseThrow().getPassword()).isEqualTo(hash);
+	}
+
+	@Test
+	void legacyHashIsUpgradedOnLogin() throws Exception {
+		Person person = new Person("Анна Сидорова", "anna", new Date());
+		person.setRole("ROLE_USER");
+		person.setPassword(new BCryptPasswordEncoder(4).encode("secret"));
+		peopleRepository.save(person);
+
+		authenticationConfiguration.getAuthenticationManager()
+				.authenticate(new UsernamePasswordAuthenticationToken("anna", "secret"));
+
+		assertThat(peopleRepository.findPersonByUsername("anna").orElseThrow().getPassword()).startsWith("{bcrypt}");
+	}
+}
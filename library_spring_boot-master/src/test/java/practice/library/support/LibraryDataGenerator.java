@@ -0,0 +1,99 @@
+package practice.library.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Детерминированный генератор данных для бенчмарков и нагрузочных тестов: при одном seed и объёмах
+// получаются одни и те же люди, книги и выдачи. Пишет пакетами через JDBC, минуя JPA, поэтому
+// годится и для миллионов строк (для 1M+ лучше файловая H2: jdbc:h2:file:...)
+public class LibraryDataGenerator {
+
+	public static final String PASSWORD = "password";
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final String[] FIRST_NAMES = {"Анна", "Борис", "Вера", "Глеб", "Дарья", "Егор", "Жанна", "Иван",
+			"Кира", "Лев", "Мария", "Никита", "Ольга", "Пётр", "Роман", "Софья", "Тимур", "Ульяна", "Фёдор", "Юлия"};
+
+	private static final String[] LAST_NAMES = {"Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров",
+			"Соколов", "Михайлов", "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов"};
+
+	private static final String[] TITLE_WORDS = {"тайна", "дом", "море", "война", "мир", "сад", "город", "ночь",
+			"звезда", "дорога", "остров", "зима", "лето", "река", "гора", "песня", "сердце", "путь", "время", "ветер"};
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final long seed;
+
+	public LibraryDataGenerator(JdbcTemplate jdbcTemplate, long seed) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.seed = seed;
+	}
+
+	// Первый человек — администратор admin, остальные — readerN; у всех пароль PASSWORD (passwordHash — его хеш).
+	// Около трети книг на руках, из них примерно половина просрочена (взята 0–20 дней назад)
+	public void generate(int people, int books, String passwordHash) {
+		Random random = new Random(seed);
+		LocalDate today = LocalDate.now();
+
+		List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < people; i++) {
+			String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+					+ LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+			Date dateOfBirth = Date.valueOf(today.minusDays(6570 + random.nextInt(20000)));
+			rows.add(new Object[]{name, i == 0 ? "admin" : "reader" + i, dateOfBirth, passwordHash,
+					i == 0 ? "ROLE_ADMIN" : "ROLE_USER"});
+			if (rows.size() == BATCH_SIZE)
+				insertPeople(rows);
+		}
+		insertPeople(rows);
+
+		List<Long> personIds = jdbcTemplate.queryForList("select id from Person order by id", Long.class);
+		long firstBookId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from Book", Long.class) + 1;
+		long now = System.currentTimeMillis();
+
+		for (int i = 0; i < books; i++) {
+			String title = capitalize(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]) + " и "
+					+ TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + i;
+			String author = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+			int yearOfProd = 1700 + random.nextInt(320);
+
+			Long ownerId = null;
+			Timestamp takenAt = null;
+			if (!personIds.isEmpty() && random.nextInt(3) == 0) {
+				ownerId = personIds.get(random.nextInt(personIds.size()));
+				takenAt = new Timestamp(now - TimeUnit.HOURS.toMillis(random.nextInt(20 * 24)));
+			}
+			rows.add(new Object[]{firstBookId + i, title, author, yearOfProd, ownerId, takenAt});
+			if (rows.size() == BATCH_SIZE)
+				insertBooks(rows);
+		}
+		insertBooks(rows);
+
+		// Id книг заданы явно, последовательность сдвигается за них с запасом на блок pooled-оптимизатора
+		jdbcTemplate.execute("alter sequence book_seq restart with " + (firstBookId + books + 100));
+	}
+
+	private void insertPeople(List<Object[]> rows) {
+		jdbcTemplate.batchUpdate("insert into Person (name, username, date_of_birth, password, role) " +
+				"values (?, ?, ?, ?, ?)", rows);
+		rows.clear();
+	}
+
+	private void insertBooks(List<Object[]> rows) {
+		jdbcTemplate.batchUpdate("insert into Book (id, title, author, year_of_prod, owner_id, taken_at) " +
+				"values (?, ?, ?, ?, ?, ?)", rows);
+		rows.clear();
+	}
+
+	private static String capitalize(String word) {
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+}
@@ -0,0 +1,180 @@
+package practice.library.views;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import practice.library.models.Book;
+import practice.library.models.Person;
+import practice.library.repositories.BooksRepository;
+import practice.library.repositories.PeopleRepository;
+import practice.library.security.PersonDetails;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class FragmentCacheTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BooksRepository booksRepository;
+
+	@Autowired
+	private PeopleRepository peopleRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private ViewVersions viewVersions;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final MockHttpSession session = new MockHttpSession();
+
+	private Book book;
+
+	private Person admin;
+
+	private Person reader;
+
+	@BeforeEach
+	void seed() {
+		book = booksRepository.save(new Book("Обломов", "Гончаров", 1859));
+		admin = new Person("Администратор", "librarian", new Date());
+		admin.setRole("ROLE_ADMIN");
+		admin = peopleRepository.save(admin);
+		reader = new Person("Читатель", "visitor", new Date());
+		reader.setRole("ROLE_USER");
+		reader = peopleRepository.save(reader);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		booksRepository.deleteAll();
+		peopleRepository.deleteAll();
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+	}
+
+	// @CacheEvict регистрирует сброс после тела метода, то есть позже, чем смену версии
+	@Test
+	void versionChangesOnlyAfterDataCachesAreEvicted() {
+		long before = viewVersions.book(book.getId()).version();
+		List<Long> seenOnEviction = new ArrayList<>();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			viewVersions.touchBookAfterCommit(book.getId());
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					seenOnEviction.add(viewVersions.book(book.getId()).version());
+				}
+			});
+		});
+
+		assertThat(seenOnEviction).containsExactly(before);
+		assertThat(viewVersions.book(book.getId()).version()).isGreaterThan(before);
+	}
+
+	@Test
+	void deletedBookLeavesNoVersionBehind() {
+		ViewVersions versions = new ViewVersions();
+		versions.touchBookAfterCommit(42);
+		long catalogBefore = versions.catalog().version();
+		assertThat(versions.book(42).version()).isPositive();
+
+		versions.removeBookAfterCommit(42);
+
+		assertThat(versions.book(42).version()).isZero();
+		assertThat(versions.catalog().version()).isGreaterThan(catalogBefore);
+	}
+
+	@Test
+	void repeatedPageIsRenderedFromCacheAndRevalidatedWith304() throws Exception {
+		double savedBefore = saved("cached");
+
+		String etag = mockMvc.perform(get("/books").with(as(admin)).session(session))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Обломов")))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("private")))
+				.andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/books").with(as(admin)).session(session))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Обломов")));
+		assertThat(saved("cached")).isGreaterThan(savedBefore);
+
+		mockMvc.perform(get("/books").with(as(admin)).session(session).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	void loanChangesTheCardAndItsEtag() throws Exception {
+		String etag = mockMvc.perform(get("/books/{id}", book.getId()).with(as(admin)).session(session))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Эта книга свободна")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(patch("/books/{id}/take", book.getId()).param("id", String.valueOf(reader.getId()))
+						.with(as(admin)).with(csrf()))
+				.andExpect(status().is3xxRedirection());
+
+		mockMvc.perform(get("/books/{id}", book.getId()).with(as(admin)).session(session)
+						.header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Книга сейчас у: ")))
+				.andExpect(content().string(containsString("Освободить книгу")))
+				.andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
+	@Test
+	void cachedFragmentsAreKeyedByRole() throws Exception {
+		String adminEtag = mockMvc.perform(get("/books/{id}", book.getId()).with(as(admin)).session(session))
+				.andExpect(content().string(containsString("Удалить книгу")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/books/{id}", book.getId()).with(as(reader)).session(session)
+						.header(HttpHeaders.IF_NONE_MATCH, adminEtag))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Обломов")))
+				.andExpect(content().string(not(containsString("Удалить книгу"))));
+	}
+
+	private static RequestPostProcessor as(Person person) {
+		return user(new PersonDetails(person));
+	}
+
+	private double saved(String reason) {
+		return meterRegistry.get("library.views.bytes.saved").tag("reason", reason).counter().count();
+	}
+}